@@ -0,0 +1,138 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.loadtest;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.appengine.tools.development.testing.LocalUserServiceTestConfig;
+import com.google.apphosting.api.ApiProxy;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.annotations.AnnotationConfiguration;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.eclipse.jetty.webapp.Configuration;
+import org.eclipse.jetty.webapp.WebAppContext;
+
+/**
+ * Runs an exploded WAR in an embedded Jetty server, with the App Engine Datastore and Users
+ * services backed by the in-memory local implementations. Jetty 9.4 is what the App Engine Java 8
+ * runtime uses, so servlets behave the way they do when deployed.
+ */
+public final class EmbeddedServer implements Closeable {
+
+  private static final String USER_ID_KEY =
+      "com.google.appengine.api.users.UserService.user_id_key";
+
+  private final AppEngineServices services;
+  private final Server server;
+
+  /**
+   * Starts the server on a free port.
+   *
+   * @param warDirectory an exploded WAR, such as the target/todo-list-1 directory that {@code mvn
+   *     package} creates
+   * @param userEmail the signed-in user for every request, or null for signed-out requests
+   */
+  public EmbeddedServer(File warDirectory, String userEmail) throws Exception {
+    services = new AppEngineServices(userEmail);
+    services.setUp();
+
+    server = new Server();
+    ServerConnector connector = new ServerConnector(server);
+    connector.setPort(0);
+    server.addConnector(connector);
+
+    WebAppContext context = new WebAppContext();
+    context.setContextPath("/");
+    context.setWar(warDirectory.getAbsolutePath());
+    // The servlets register themselves with @WebServlet, so scan for annotations.
+    Configuration.ClassList.setServerDefault(server)
+        .addBefore(
+            "org.eclipse.jetty.webapp.JettyWebXmlConfiguration",
+            AnnotationConfiguration.class.getName());
+    context.setAttribute(
+        "org.eclipse.jetty.server.webapp.ContainerIncludeJarPattern",
+        ".*/apache-jsp-[^/]*\\.jar$|.*/javax.servlet-api-[^/]*\\.jar$");
+    // Share the App Engine API classes with the WAR so that its calls reach the local services
+    // set up here rather than a second copy of the SDK in WEB-INF/lib.
+    context.getSystemClasspathPattern().add("com.google.appengine.", "com.google.apphosting.");
+
+    HandlerWrapper environment =
+        new HandlerWrapper() {
+          @Override
+          public void handle(
+              String target,
+              Request baseRequest,
+              HttpServletRequest request,
+              HttpServletResponse response)
+              throws IOException, ServletException {
+            // App Engine APIs look up their environment per thread, like the real runtime.
+            ApiProxy.setEnvironmentForCurrentThread(services.newRequestEnvironment());
+            try {
+              super.handle(target, baseRequest, request, response);
+            } finally {
+              ApiProxy.clearEnvironmentForCurrentThread();
+            }
+          }
+        };
+    environment.setHandler(context);
+    server.setHandler(environment);
+    server.start();
+  }
+
+  /** Returns the address the server is listening on, such as http://localhost:1234. */
+  public String getBaseUrl() {
+    int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+    return "http://localhost:" + port;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      server.stop();
+    } catch (Exception e) {
+      throw new IOException("Could not stop the server", e);
+    } finally {
+      services.tearDown();
+    }
+  }
+
+  /** The local App Engine services, which can hand out an environment for each request. */
+  private static final class AppEngineServices extends LocalServiceTestHelper {
+    AppEngineServices(String userEmail) {
+      super(new LocalDatastoreServiceTestConfig(), new LocalUserServiceTestConfig());
+      if (userEmail != null) {
+        setEnvIsLoggedIn(true);
+        setEnvEmail(userEmail);
+        setEnvAuthDomain("gmail.com");
+        setEnvAttributes(
+            Collections.<String, Object>singletonMap(
+                USER_ID_KEY, Integer.toString(userEmail.hashCode() & Integer.MAX_VALUE)));
+      }
+    }
+
+    ApiProxy.Environment newRequestEnvironment() {
+      return newEnvironment();
+    }
+  }
+}
@@ -0,0 +1,189 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Sends requests from a fixed number of client threads and records their latencies in an
+ * HdrHistogram. Each client cycles through the requests in order and keeps its own cookies, so
+ * servlets that use sessions see one session per client.
+ *
+ * <p>With a target rate the load is open: every request has a scheduled start time and its
+ * latency is measured from that time, so a server that falls behind is charged for the queueing
+ * it causes instead of quietly slowing the clients down. Without a rate every client sends its
+ * next request as soon as the previous one returns.
+ */
+final class LoadGenerator {
+
+  private final String baseUrl;
+  private final List<TestRequest> requests;
+  private final int clients;
+  private final double requestsPerSecond;
+
+  private final Recorder recorder = new Recorder(3);
+  private final Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+  private final AtomicLong errors = new AtomicLong();
+
+  private volatile boolean running;
+
+  /**
+   * @param requestsPerSecond the total rate across all clients, or 0 to send as fast as the
+   *     server answers
+   */
+  LoadGenerator(String baseUrl, List<TestRequest> requests, int clients, double requestsPerSecond) {
+    this.baseUrl = baseUrl;
+    this.requests = requests;
+    this.clients = clients;
+    this.requestsPerSecond = requestsPerSecond;
+  }
+
+  /** Starts the client threads. */
+  void start() {
+    running = true;
+    long start = System.nanoTime();
+    for (int i = 0; i < clients; i++) {
+      int client = i;
+      Thread thread = new Thread(() -> runClient(client, start), "load-client-" + i);
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  void stop() {
+    running = false;
+  }
+
+  /**
+   * Returns the latencies, in microseconds, recorded since the last call. Each call starts a new
+   * interval, so calling it at the end of the warmup discards the warmup requests.
+   */
+  Histogram getIntervalHistogram() {
+    return recorder.getIntervalHistogram();
+  }
+
+  long getErrors() {
+    return errors.get();
+  }
+
+  /** Returns the number of responses with each status code, ordered by status. */
+  Map<Integer, Long> getStatusCounts() {
+    Map<Integer, Long> counts = new LinkedHashMap<>();
+    statusCounts.keySet().stream()
+        .sorted()
+        .forEach(status -> counts.put(status, statusCounts.get(status).sum()));
+    return counts;
+  }
+
+  private void runClient(int client, long start) {
+    Map<String, String> cookies = new LinkedHashMap<>();
+    // Clients are staggered so that together they send at an even pace.
+    long intervalNanos = requestsPerSecond > 0 ? (long) (clients * 1e9 / requestsPerSecond) : 0;
+    long scheduled = start + intervalNanos * client / clients;
+
+    for (int i = client; running; i++) {
+      TestRequest request = requests.get(i % requests.size());
+      if (intervalNanos > 0) {
+        long delay = scheduled - System.nanoTime();
+        if (delay > 0) {
+          try {
+            TimeUnit.NANOSECONDS.sleep(delay);
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+      } else {
+        scheduled = System.nanoTime();
+      }
+
+      int status = send(request, cookies);
+      long latencyMicros = (System.nanoTime() - scheduled) / 1000;
+      recorder.recordValue(latencyMicros);
+      if (status < 0) {
+        errors.incrementAndGet();
+      } else {
+        statusCounts.computeIfAbsent(status, key -> new LongAdder()).increment();
+      }
+      scheduled += intervalNanos;
+    }
+  }
+
+  /** Sends a request and returns its status code, or -1 if it failed. */
+  private int send(TestRequest request, Map<String, String> cookies) {
+    try {
+      HttpURLConnection connection =
+          (HttpURLConnection) new URL(baseUrl + request.getPath()).openConnection();
+      connection.setRequestMethod(request.getMethod());
+      connection.setInstanceFollowRedirects(false);
+      if (!cookies.isEmpty()) {
+        connection.setRequestProperty("Cookie", joinCookies(cookies));
+      }
+      if (request.getContentType() != null) {
+        connection.setRequestProperty("Content-Type", request.getContentType());
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+          out.write(request.getBody());
+        }
+      }
+
+      int status = connection.getResponseCode();
+      List<String> setCookies = connection.getHeaderFields().get("Set-Cookie");
+      if (setCookies != null) {
+        for (String setCookie : setCookies) {
+          String pair = setCookie.split(";", 2)[0];
+          int equals = pair.indexOf('=');
+          if (equals > 0) {
+            cookies.put(pair.substring(0, equals).trim(), pair.substring(equals + 1).trim());
+          }
+        }
+      }
+
+      // Read the whole response so the connection is kept alive for the next request.
+      InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+      if (in != null) {
+        try (InputStream body = in) {
+          byte[] buffer = new byte[8192];
+          while (body.read(buffer) != -1) {}
+        }
+      }
+      return status;
+    } catch (IOException e) {
+      System.err.println("Request failed: " + request + ": " + e);
+      return -1;
+    }
+  }
+
+  private static String joinCookies(Map<String, String> cookies) {
+    List<String> pairs = new ArrayList<>();
+    for (Map.Entry<String, String> cookie : cookies.entrySet()) {
+      pairs.add(cookie.getKey() + "=" + cookie.getValue());
+    }
+    return String.join("; ", pairs);
+  }
+}
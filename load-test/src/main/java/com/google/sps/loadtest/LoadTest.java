@@ -0,0 +1,202 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.loadtest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Measures the throughput and latency of one of the servlet modules. The module is packaged with
+ * {@code mvn package} first, then started in an embedded server and driven with the requests given
+ * on the command line, for example:
+ *
+ * <pre>
+ * mvn -q exec:java -Dexec.args="--module ../walkthroughs/week-3-server/examples/todo-list \
+ *     --user test@example.com --request 'GET /list-tasks' --clients 32 --rate 2000"
+ * </pre>
+ *
+ * <p>Options:
+ *
+ * <ul>
+ *   <li>--module DIR: a module whose packaged WAR to run, or --war DIR for an exploded WAR, or
+ *       --url URL to load a server that is already running
+ *   <li>--request 'METHOD /path [body]': a request to send, repeated to cycle through several
+ *   <li>--clients N: the number of client threads (default 16)
+ *   <li>--rate N: the total requests per second, or 0 to send as fast as possible (default 0)
+ *   <li>--warmup SECONDS: how long to run before recording (default 5)
+ *   <li>--duration SECONDS: how long to record for (default 30)
+ *   <li>--user EMAIL: sign every request in as this user
+ *   <li>--hgrm FILE: also write the percentile distribution to a file, which can be compared
+ *       across runs with the HdrHistogram plotter
+ * </ul>
+ */
+public final class LoadTest {
+
+  public static void main(String[] args) throws Exception {
+    File war = null;
+    String url = null;
+    String user = null;
+    String hgrmFile = null;
+    List<TestRequest> requests = new ArrayList<>();
+    int clients = 16;
+    double rate = 0;
+    int warmupSeconds = 5;
+    int durationSeconds = 30;
+
+    for (int i = 0; i < args.length; i++) {
+      String option = args[i];
+      if (i + 1 == args.length) {
+        exitWithUsage("Missing value for " + option);
+      }
+      String value = args[++i];
+      switch (option) {
+        case "--module":
+          war = findPackagedWar(new File(value));
+          break;
+        case "--war":
+          war = new File(value);
+          break;
+        case "--url":
+          url = value;
+          break;
+        case "--request":
+          requests.add(TestRequest.parse(value));
+          break;
+        case "--clients":
+          clients = Integer.parseInt(value);
+          break;
+        case "--rate":
+          rate = Double.parseDouble(value);
+          break;
+        case "--warmup":
+          warmupSeconds = Integer.parseInt(value);
+          break;
+        case "--duration":
+          durationSeconds = Integer.parseInt(value);
+          break;
+        case "--user":
+          user = value;
+          break;
+        case "--hgrm":
+          hgrmFile = value;
+          break;
+        default:
+          exitWithUsage("Unknown option " + option);
+      }
+    }
+    if ((war == null) == (url == null)) {
+      exitWithUsage("Please pass exactly one of --module, --war or --url");
+    }
+    if (requests.isEmpty()) {
+      exitWithUsage("Please pass at least one --request");
+    }
+    if (clients < 1 || rate < 0 || warmupSeconds < 0 || durationSeconds < 1) {
+      exitWithUsage("Clients and duration must be positive, and rate and warmup not negative");
+    }
+
+    EmbeddedServer server = null;
+    if (war != null) {
+      server = new EmbeddedServer(war, user);
+      url = server.getBaseUrl();
+      System.out.println("Started " + war + " at " + url);
+    }
+
+    try {
+      LoadGenerator generator = new LoadGenerator(url, requests, clients, rate);
+      generator.start();
+
+      Thread.sleep(warmupSeconds * 1000L);
+      generator.getIntervalHistogram();
+      long errorsBeforeRecording = generator.getErrors();
+      Map<Integer, Long> statusesBeforeRecording = generator.getStatusCounts();
+
+      Histogram total = new Histogram(3);
+      for (int second = 1; second <= durationSeconds; second++) {
+        Thread.sleep(1000);
+        Histogram interval = generator.getIntervalHistogram();
+        total.add(interval);
+        System.out.println(
+            String.format(
+                Locale.ROOT,
+                "%4ds %8d req/s   p50 %8.2f ms   p99 %8.2f ms   max %8.2f ms",
+                second,
+                interval.getTotalCount(),
+                interval.getValueAtPercentile(50) / 1000.0,
+                interval.getValueAtPercentile(99) / 1000.0,
+                interval.getMaxValue() / 1000.0));
+      }
+      generator.stop();
+
+      System.out.println();
+      System.out.println(
+          String.format(
+              Locale.ROOT,
+              "%d requests in %d s (%.1f req/s), %d failed",
+              total.getTotalCount(),
+              durationSeconds,
+              total.getTotalCount() / (double) durationSeconds,
+              generator.getErrors() - errorsBeforeRecording));
+      Map<Integer, Long> statuses = generator.getStatusCounts();
+      System.out.println("Statuses: " + subtract(statuses, statusesBeforeRecording));
+      System.out.println("Latency in milliseconds:");
+      total.outputPercentileDistribution(System.out, 1000.0);
+
+      if (hgrmFile != null) {
+        try (PrintStream out = new PrintStream(new FileOutputStream(hgrmFile), false, "UTF-8")) {
+          total.outputPercentileDistribution(out, 1000.0);
+        }
+      }
+    } finally {
+      if (server != null) {
+        server.close();
+      }
+    }
+  }
+
+  /** Returns the exploded WAR that mvn package created in the module's target directory. */
+  private static File findPackagedWar(File module) throws IOException {
+    File[] candidates = new File(module, "target").listFiles();
+    if (candidates != null) {
+      for (File candidate : candidates) {
+        if (new File(candidate, "WEB-INF").isDirectory()) {
+          return candidate;
+        }
+      }
+    }
+    throw new IOException("No packaged WAR in " + module + "; run mvn package there first");
+  }
+
+  private static Map<Integer, Long> subtract(Map<Integer, Long> counts, Map<Integer, Long> before) {
+    counts.replaceAll((status, count) -> count - before.getOrDefault(status, 0L));
+    counts.values().removeIf(count -> count == 0);
+    return counts;
+  }
+
+  private static void exitWithUsage(String message) {
+    System.err.println(message);
+    System.err.println(
+        "Usage: LoadTest (--module DIR | --war DIR | --url URL) --request 'METHOD /path [body]'"
+            + " [--clients N] [--rate N] [--warmup SECONDS] [--duration SECONDS]"
+            + " [--user EMAIL] [--hgrm FILE]");
+    System.exit(1);
+  }
+}
@@ -0,0 +1,75 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.loadtest;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A request that the load generator sends over and over, written on the command line as
+ * {@code METHOD /path [body]}. Bodies that start with '{' or '[' are sent as JSON and any other
+ * body as form parameters, such as {@code POST /new-task title=Hello}.
+ */
+final class TestRequest {
+
+  private final String method;
+  private final String path;
+  private final String contentType;
+  private final byte[] body;
+
+  private TestRequest(String method, String path, String contentType, byte[] body) {
+    this.method = method;
+    this.path = path;
+    this.contentType = contentType;
+    this.body = body;
+  }
+
+  static TestRequest parse(String spec) {
+    String[] parts = spec.trim().split(" ", 3);
+    if (parts.length < 2 || !parts[1].startsWith("/")) {
+      throw new IllegalArgumentException("Expected METHOD /path [body] but got: " + spec);
+    }
+    if (parts.length == 2) {
+      return new TestRequest(parts[0], parts[1], null, new byte[0]);
+    }
+    String body = parts[2];
+    String contentType =
+        body.startsWith("{") || body.startsWith("[")
+            ? "application/json"
+            : "application/x-www-form-urlencoded";
+    return new TestRequest(parts[0], parts[1], contentType, body.getBytes(StandardCharsets.UTF_8));
+  }
+
+  String getMethod() {
+    return method;
+  }
+
+  String getPath() {
+    return path;
+  }
+
+  /** Returns the content type of the body, or null if there is no body. */
+  String getContentType() {
+    return contentType;
+  }
+
+  byte[] getBody() {
+    return body;
+  }
+
+  @Override
+  public String toString() {
+    return method + " " + path;
+  }
+}
@@ -22,10 +22,13 @@ public final class Comment {
   private final long id;
   private final String text;
   private final long timestamp;
+  /** From -1 (negative) to 1 (positive), or null if not scored yet. */
+  private final Double sentiment;
 
-  public Comment(long id, String text, long timestamp) {
+  public Comment(long id, String text, long timestamp, Double sentiment) {
     this.id = id;
     this.text = text;
     this.timestamp = timestamp;
+    this.sentiment = sentiment;
   }
 }
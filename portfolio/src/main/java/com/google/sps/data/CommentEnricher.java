@@ -0,0 +1,153 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Query.FilterPredicate;
+import com.google.appengine.api.datastore.QueryResultList;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.datastore.TransactionOptions;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adds sentiment scores to stored comments, a batch at a time, so that
+ * posting a comment never waits for sentiment analysis. New comments are
+ * saved with a null sentiment, which Datastore indexes, so unscored comments
+ * can be found with a query. Blank comments and comments the scorer can't
+ * score are saved as neutral, the latter with a sentimentError flag, so that
+ * they leave the query instead of being picked up on every run.
+ */
+public final class CommentEnricher {
+  /** How many comments are scored per batch. */
+  public static final int BATCH_SIZE = 100;
+
+  /** Cross-group transactions can touch at most 25 entity groups. */
+  private static final int MAX_GROUPS_PER_TRANSACTION = 25;
+
+  private final DatastoreService datastore;
+  private final SentimentScorer scorer;
+
+  public CommentEnricher(DatastoreService datastore, SentimentScorer scorer) {
+    this.datastore = datastore;
+    this.scorer = scorer;
+  }
+
+  /** Scores up to BATCH_SIZE unscored comments and returns how many it found. */
+  public int scoreNextBatch() throws IOException {
+    Query query = new Query(Constants.COMMENT_KIND)
+        .setFilter(new FilterPredicate(Constants.SENTIMENT_PROPERTY, FilterOperator.EQUAL, null));
+    List<Entity> comments =
+        datastore.prepare(query).asList(FetchOptions.Builder.withLimit(BATCH_SIZE));
+    score(comments);
+    return comments.size();
+  }
+
+  /**
+   * Scores the comments saved before comments had a sentiment property,
+   * which the null query can't find. Looks through one page of comments
+   * starting at the cursor, which is null for the first page, and returns
+   * the cursor of the next page, or null once every comment has been seen.
+   */
+  public Cursor backfill(Cursor cursor) throws IOException {
+    FetchOptions options = FetchOptions.Builder.withLimit(BATCH_SIZE);
+    if (cursor != null) {
+      options.startCursor(cursor);
+    }
+    QueryResultList<Entity> page =
+        datastore.prepare(new Query(Constants.COMMENT_KIND)).asQueryResultList(options);
+
+    List<Entity> unscored = new ArrayList<>();
+    for (Entity comment : page) {
+      if (!comment.hasProperty(Constants.SENTIMENT_PROPERTY)) {
+        unscored.add(comment);
+      }
+    }
+    score(unscored);
+    return page.size() == BATCH_SIZE ? page.getCursor() : null;
+  }
+
+  private void score(List<Entity> comments) throws IOException {
+    if (comments.isEmpty()) {
+      return;
+    }
+    List<String> texts = new ArrayList<>(comments.size());
+    List<Integer> scored = new ArrayList<>(comments.size());
+    for (int i = 0; i < comments.size(); i++) {
+      String text = (String) comments.get(i).getProperty(Constants.TEXT_PROPERTY);
+      if (text != null && !text.trim().isEmpty()) {
+        texts.add(text);
+        scored.add(i);
+      }
+    }
+    List<Float> textScores = texts.isEmpty() ? new ArrayList<>() : scorer.score(texts);
+
+    // Blank comments have nothing to analyze, so they stay neutral.
+    List<Float> scores = new ArrayList<>(Collections.nCopies(comments.size(), 0f));
+    for (int i = 0; i < scored.size(); i++) {
+      scores.set(scored.get(i), textScores.get(i));
+    }
+
+    for (int start = 0; start < comments.size(); start += MAX_GROUPS_PER_TRANSACTION) {
+      int end = Math.min(start + MAX_GROUPS_PER_TRANSACTION, comments.size());
+      write(comments.subList(start, end), scores.subList(start, end));
+    }
+  }
+
+  /**
+   * Saves the scores with one batched put. The comments are read again in
+   * the same transaction so a comment deleted while it was being scored
+   * isn't brought back. A null score marks a comment the scorer couldn't
+   * score.
+   */
+  private void write(List<Entity> comments, List<Float> scores) {
+    List<Key> keys = new ArrayList<>(comments.size());
+    for (Entity comment : comments) {
+      keys.add(comment.getKey());
+    }
+
+    Transaction txn = datastore.beginTransaction(TransactionOptions.Builder.withXG(true));
+    try {
+      Map<Key, Entity> stored = datastore.get(txn, keys);
+      List<Entity> updated = new ArrayList<>(keys.size());
+      for (int i = 0; i < keys.size(); i++) {
+        Entity comment = stored.get(keys.get(i));
+        if (comment != null && comment.getProperty(Constants.SENTIMENT_PROPERTY) == null) {
+          Float score = scores.get(i);
+          comment.setProperty(Constants.SENTIMENT_PROPERTY, score == null ? 0.0 : (double) score);
+          if (score == null) {
+            comment.setProperty(Constants.SENTIMENT_ERROR_PROPERTY, true);
+          }
+          updated.add(comment);
+        }
+      }
+      datastore.put(txn, updated);
+      txn.commit();
+    } finally {
+      if (txn.isActive()) {
+        txn.rollback();
+      }
+    }
+  }
+}
@@ -9,4 +9,8 @@ public final class Constants {
     public static final String TEXT_PROPERTY = "text";
     public static final String ID_PROPERTY = "id";
     public static final String LIMIT_PROPERTY = "limit";
+    public static final String SENTIMENT_PROPERTY = "sentiment";
+    public static final String SENTIMENT_ERROR_PROPERTY = "sentimentError";
+    public static final String SORT_PROPERTY = "sort";
+    public static final String MIN_SENTIMENT_PROPERTY = "minSentiment";
 }
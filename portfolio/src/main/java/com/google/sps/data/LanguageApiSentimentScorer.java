@@ -0,0 +1,99 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.language.v1.AnalyzeSentimentRequest;
+import com.google.cloud.language.v1.AnalyzeSentimentResponse;
+import com.google.cloud.language.v1.Document;
+import com.google.cloud.language.v1.LanguageServiceClient;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Scores text with the Natural Language API. One client is kept open for
+ * the life of the scorer, and the texts of a batch are analyzed concurrently
+ * since the API only takes one document per call. A document the API
+ * rejects is scored null on its own; any other failure fails the batch so
+ * that the task is retried.
+ */
+public final class LanguageApiSentimentScorer implements SentimentScorer {
+  /**
+   * How many calls are in flight at once. A backfill page holds a hundred
+   * comments, and starting them all together would hit the Natural Language
+   * API's requests-per-minute limit.
+   */
+  private static final int MAX_CONCURRENT_CALLS = 16;
+
+  private final LanguageServiceClient languageService;
+
+  public LanguageApiSentimentScorer() throws IOException {
+    languageService = LanguageServiceClient.create();
+  }
+
+  @Override
+  public List<Float> score(List<String> texts) throws IOException {
+    List<Float> scores = new ArrayList<>(texts.size());
+    for (int start = 0; start < texts.size(); start += MAX_CONCURRENT_CALLS) {
+      int end = Math.min(start + MAX_CONCURRENT_CALLS, texts.size());
+      List<ApiFuture<AnalyzeSentimentResponse>> calls = new ArrayList<>(end - start);
+      for (String text : texts.subList(start, end)) {
+        Document doc =
+            Document.newBuilder().setContent(text).setType(Document.Type.PLAIN_TEXT).build();
+        AnalyzeSentimentRequest request =
+            AnalyzeSentimentRequest.newBuilder().setDocument(doc).build();
+        calls.add(languageService.analyzeSentimentCallable().futureCall(request));
+      }
+      for (ApiFuture<AnalyzeSentimentResponse> call : calls) {
+        AnalyzeSentimentResponse response = await(call);
+        scores.add(response == null ? null : response.getDocumentSentiment().getScore());
+      }
+    }
+    return scores;
+  }
+
+  @Override
+  public void close() {
+    languageService.close();
+  }
+
+  /**
+   * Waits for one call. Returns null if the API rejected the document
+   * itself, for example because its language isn't supported, since
+   * retrying won't change the answer.
+   */
+  private static AnalyzeSentimentResponse await(ApiFuture<AnalyzeSentimentResponse> call)
+      throws IOException {
+    try {
+      return call.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof ApiException
+          && ((ApiException) e.getCause()).getStatusCode().getCode()
+              == StatusCode.Code.INVALID_ARGUMENT) {
+        System.err.println("Could not score comment: " + e.getCause().getMessage());
+        return null;
+      }
+      throw new IOException("Sentiment analysis failed", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for sentiment analysis");
+    }
+  }
+}
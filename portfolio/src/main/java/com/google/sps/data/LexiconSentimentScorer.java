@@ -0,0 +1,94 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.Set;
+
+/**
+ * Scores text offline by adding up the scores of the words it contains,
+ * looked up in a word list. Much rougher than the Natural Language API, but
+ * free, instant and works without credentials on the dev server.
+ */
+public final class LexiconSentimentScorer implements SentimentScorer {
+  /** 
+   * Keeps the normalized score away from -1 and 1 until several strong
+   * words agree, the same approach VADER uses.
+   */
+  private static final double NORMALIZATION = 15;
+
+  /** How much a preceding negation like "not" weakens and flips a word. */
+  private static final double NEGATION_FACTOR = -0.75;
+
+  private static final Set<String> NEGATIONS =
+      new HashSet<>(Arrays.asList("not", "no", "never", "isn't", "wasn't", "don't", "didn't",
+          "doesn't", "can't", "won't", "aren't", "nothing", "hardly"));
+
+  private final Map<String, Integer> wordScores;
+
+  private LexiconSentimentScorer(Map<String, Integer> wordScores) {
+    this.wordScores = wordScores;
+  }
+
+  /** 
+   * Reads a word list with one word and its score from -5 to 5 per line,
+   * separated by a tab. Lines starting with # are ignored.
+   */
+  public static LexiconSentimentScorer load(InputStream lexicon) {
+    Map<String, Integer> wordScores = new HashMap<>();
+    Scanner scanner = new Scanner(lexicon, "UTF-8");
+    while (scanner.hasNextLine()) {
+      String line = scanner.nextLine().trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] cells = line.split("\\t");
+      wordScores.put(cells[0], Integer.parseInt(cells[1].trim()));
+    }
+    scanner.close();
+    return new LexiconSentimentScorer(wordScores);
+  }
+
+  @Override
+  public List<Float> score(List<String> texts) {
+    List<Float> scores = new ArrayList<>(texts.size());
+    for (String text : texts) {
+      scores.add(score(text));
+    }
+    return scores;
+  }
+
+  private float score(String text) {
+    String[] words = text.toLowerCase(Locale.ROOT).split("[^a-z']+");
+    double sum = 0;
+    for (int i = 0; i < words.length; i++) {
+      Integer wordScore = wordScores.get(words[i]);
+      if (wordScore == null) {
+        continue;
+      }
+      boolean negated = i > 0 && NEGATIONS.contains(words[i - 1]);
+      sum += negated ? wordScore * NEGATION_FACTOR : wordScore;
+    }
+    return (float) (sum / Math.sqrt(sum * sum + NORMALIZATION));
+  }
+}
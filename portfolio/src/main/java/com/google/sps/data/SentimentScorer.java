@@ -0,0 +1,35 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.IOException;
+import java.util.List;
+
+/** 
+ * Scores how positive or negative pieces of text are, from -1 (negative)
+ * to 1 (positive), the same range the Natural Language API uses.
+ */
+public interface SentimentScorer {
+
+  /**
+   * Returns the score of each text, in the same order. A text the scorer
+   * can never score, such as one in an unsupported language, gets null
+   * instead of failing the whole batch.
+   */
+  List<Float> score(List<String> texts) throws IOException;
+
+  /** Releases any connections the scorer holds. */
+  default void close() {}
+}
@@ -0,0 +1,136 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the nightly sleep samples together with their
+ * moving averages. Samples are kept oldest first so that new nights are
+ * appended at the end; appending returns a new snapshot and only recomputes
+ * the averages whose window reaches the new samples.
+ */
+public final class SleepSeries {
+  /** Number of nights in the centered moving average window. */
+  public static final int WINDOW_SIZE = 5;
+
+  private static final int MIDWAY = WINDOW_SIZE / 2;
+
+  private final String[] dates;
+  private final int[] scores;
+  private final int[] deepMinutes;
+  private final double[] maScores;
+  private final double[] maDeepMinutes;
+
+  private SleepSeries(String[] dates, int[] scores, int[] deepMinutes,
+      double[] maScores, double[] maDeepMinutes) {
+    this.dates = dates;
+    this.scores = scores;
+    this.deepMinutes = deepMinutes;
+    this.maScores = maScores;
+    this.maDeepMinutes = maDeepMinutes;
+  }
+
+  /** Returns a series with no samples. */
+  public static SleepSeries empty() {
+    return new SleepSeries(new String[0], new int[0], new int[0], new double[0], new double[0]);
+  }
+
+  /** A single night of sleep data, identified by its date (yyyy-MM-dd). */
+  public static final class Sample {
+    private final String date;
+    private final int score;
+    private final int deepMinutes;
+
+    public Sample(String date, int score, int deepMinutes) {
+      this.date = date;
+      this.score = score;
+      this.deepMinutes = deepMinutes;
+    }
+
+    public String getDate() {
+      return date;
+    }
+  }
+
+  /** Returns the number of nights in this series. */
+  public int size() {
+    return dates.length;
+  }
+
+  /** Returns the date of the most recent night, or null if the series is empty. */
+  public String getLatestDate() {
+    return dates.length == 0 ? null : dates[dates.length - 1];
+  }
+
+  /**
+   * Returns a new series with the given samples, which must be in
+   * chronological order and newer than {@link #getLatestDate()}, appended.
+   * This series is left untouched so readers holding it keep a consistent view.
+   */
+  public SleepSeries append(List<Sample> samples) {
+    int oldSize = dates.length;
+    int newSize = oldSize + samples.size();
+    String[] newDates = Arrays.copyOf(dates, newSize);
+    int[] newScores = Arrays.copyOf(scores, newSize);
+    int[] newDeepMinutes = Arrays.copyOf(deepMinutes, newSize);
+    for (int i = 0; i < samples.size(); i++) {
+      Sample sample = samples.get(i);
+      newDates[oldSize + i] = sample.date;
+      newScores[oldSize + i] = sample.score;
+      newDeepMinutes[oldSize + i] = sample.deepMinutes;
+    }
+
+    /** Only the trailing half window of old nights sees the new samples. */
+    int firstChanged = Math.max(0, oldSize - MIDWAY);
+    double[] newMaScores = Arrays.copyOf(maScores, newSize);
+    double[] newMaDeepMinutes = Arrays.copyOf(maDeepMinutes, newSize);
+    for (int i = firstChanged; i < newSize; i++) {
+      newMaScores[i] = windowAverage(newScores, i);
+      newMaDeepMinutes[i] = windowAverage(newDeepMinutes, i);
+    }
+    return new SleepSeries(newDates, newScores, newDeepMinutes, newMaScores, newMaDeepMinutes);
+  }
+
+  /**
+   * Averages the window centered on index i, truncating the window at either
+   * end of the series. The integer division matches the averages the chart
+   * has always shown.
+   */
+  private static double windowAverage(int[] values, int i) {
+    int start = Math.max(0, i - MIDWAY);
+    int end = Math.min(values.length, i + MIDWAY + 1);
+    int sum = 0;
+    for (int j = start; j < end; j++) {
+      sum += values[j];
+    }
+    return sum / (end - start);
+  }
+
+  /**
+   * Returns the series keyed by date, most recent night first, with each value
+   * holding the sleep score, deep sleep minutes and their moving averages.
+   */
+  public Map<String, double[]> toMap() {
+    Map<String, double[]> map = new LinkedHashMap<>();
+    for (int i = dates.length - 1; i >= 0; i--) {
+      map.put(dates[i], new double[] {scores[i], deepMinutes[i], maScores[i], maDeepMinutes[i]});
+    }
+    return map;
+  }
+}
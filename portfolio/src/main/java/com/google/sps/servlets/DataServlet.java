@@ -22,6 +22,8 @@ import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
 import com.google.appengine.api.datastore.PreparedQuery;
 import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Query.FilterPredicate;
 import com.google.appengine.api.datastore.Query.SortDirection;
 
 import java.io.IOException;
@@ -41,12 +43,30 @@ public class DataServlet extends HttpServlet {
 
     /** 
      * Retrieves the (limit number) of most recent comments from Datastore
-     * and produces a JSON response containing these comments.
+     * and produces a JSON response containing these comments. With
+     * sort=sentiment the most positive comments come first, and with
+     * minSentiment only comments scoring at least that much are returned,
+     * also most positive first. Comments that haven't been scored yet are
+     * left out of both.
      */
     @Override
     public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
         int limit = Integer.parseInt(request.getParameter(Constants.LIMIT_PROPERTY));
-        Query query = new Query(Constants.COMMENT_KIND).addSort(Constants.TIMESTAMP_PROPERTY, SortDirection.DESCENDING);
+        String sort = request.getParameter(Constants.SORT_PROPERTY);
+        String minSentiment = request.getParameter(Constants.MIN_SENTIMENT_PROPERTY);
+
+        Query query = new Query(Constants.COMMENT_KIND);
+        if (minSentiment != null) {
+            // Datastore requires the first sort to be on the filtered property.
+            query.setFilter(new FilterPredicate(Constants.SENTIMENT_PROPERTY,
+                    FilterOperator.GREATER_THAN_OR_EQUAL, Double.parseDouble(minSentiment)))
+                .addSort(Constants.SENTIMENT_PROPERTY, SortDirection.DESCENDING);
+        } else if (Constants.SENTIMENT_PROPERTY.equals(sort)) {
+            query.setFilter(new FilterPredicate(Constants.SENTIMENT_PROPERTY,
+                    FilterOperator.GREATER_THAN_OR_EQUAL, -1.0))
+                .addSort(Constants.SENTIMENT_PROPERTY, SortDirection.DESCENDING);
+        }
+        query.addSort(Constants.TIMESTAMP_PROPERTY, SortDirection.DESCENDING);
 
         DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
         PreparedQuery results = datastore.prepare(query);
@@ -61,8 +81,9 @@ public class DataServlet extends HttpServlet {
             long id = entity.getKey().getId();
             String text = (String)entity.getProperty(Constants.TEXT_PROPERTY);
             long timestamp = (long)entity.getProperty(Constants.TIMESTAMP_PROPERTY);
+            Double sentiment = (Double)entity.getProperty(Constants.SENTIMENT_PROPERTY);
 
-            Comment comment = new Comment(id, text, timestamp);
+            Comment comment = new Comment(id, text, timestamp, sentiment);
             comments.add(comment);
         }
 
@@ -76,7 +97,8 @@ public class DataServlet extends HttpServlet {
      * Stores the comment into Datastore and redirect user back to home page
      * after submission. The form to submit the comment on the website directs
      * to /data page so the redirect prevents the user from getting stuck on
-     * the empty /data page.
+     * the empty /data page. The comment is saved without a sentiment score;
+     * ScoreCommentsServlet adds it in the background.
      */
     @Override
     public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
@@ -86,9 +108,11 @@ public class DataServlet extends HttpServlet {
         Entity commentEntity = new Entity(Constants.COMMENT_KIND);
         commentEntity.setProperty(Constants.TEXT_PROPERTY, text);
         commentEntity.setProperty(Constants.TIMESTAMP_PROPERTY, timestamp);
+        commentEntity.setProperty(Constants.SENTIMENT_PROPERTY, null);
 
         DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
         datastore.put(commentEntity);
+        ScoreCommentsServlet.scheduleScoring();
 
         response.sendRedirect("/index.html#comments");
     }
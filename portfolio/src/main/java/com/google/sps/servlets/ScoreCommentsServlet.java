@@ -0,0 +1,130 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskAlreadyExistsException;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.sps.data.CommentEnricher;
+import com.google.sps.data.LanguageApiSentimentScorer;
+import com.google.sps.data.LexiconSentimentScorer;
+import com.google.sps.data.SentimentScorer;
+import java.io.IOException;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Scores the sentiment of stored comments in the background. It runs as a
+ * task queue task scheduled when a comment is posted, and from cron to pick
+ * up anything a task missed. Each run scores one batch, and adds a task for
+ * the next batch if there might be more.
+ *
+ * <p>The scorer is picked with the sentiment.backend system property in
+ * appengine-web.xml: "language" for the Natural Language API, or "lexicon"
+ * for a local word list that works offline.
+ *
+ * <p>web.xml limits /tasks/* to admins, which the task queue and cron
+ * count as. To score comments saved before scoring existed, sign in as an
+ * admin and visit /tasks/score-comments?backfill=true once; each page
+ * queues the next.
+ */
+@WebServlet("/tasks/score-comments")
+public class ScoreCommentsServlet extends HttpServlet {
+  static final String URL = "/tasks/score-comments";
+  static final String LEXICON_FILENAME = "/WEB-INF/sentiment_lexicon.tsv";
+
+  /** Comments posted within this many milliseconds share one scoring task. */
+  private static final long TASK_WINDOW_MILLIS = 10 * 1000;
+
+  private SentimentScorer scorer;
+  private CommentEnricher enricher;
+
+  @Override
+  public void init() throws ServletException {
+    String backend = System.getProperty("sentiment.backend", "lexicon");
+    if (backend.equals("language")) {
+      try {
+        scorer = new LanguageApiSentimentScorer();
+      } catch (IOException e) {
+        throw new ServletException("Could not create the Natural Language API client", e);
+      }
+    } else {
+      scorer = LexiconSentimentScorer.load(
+          getServletContext().getResourceAsStream(LEXICON_FILENAME));
+    }
+    enricher = new CommentEnricher(DatastoreServiceFactory.getDatastoreService(), scorer);
+  }
+
+  @Override
+  public void destroy() {
+    scorer.close();
+  }
+
+  /** 
+   * Schedules a task to score recently posted comments. Comments posted
+   * close together share a task, which waits a little so they are scored
+   * as one batch.
+   */
+  static void scheduleScoring() {
+    long window = System.currentTimeMillis() / TASK_WINDOW_MILLIS;
+    try {
+      QueueFactory.getDefaultQueue().add(TaskOptions.Builder.withUrl(URL)
+          .taskName("score-comments-" + window)
+          .countdownMillis(TASK_WINDOW_MILLIS));
+    } catch (TaskAlreadyExistsException e) {
+      // Another comment in this window already scheduled the task.
+    }
+  }
+
+  /** Cron requests use GET. */
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    doPost(request, response);
+  }
+
+  /** 
+   * Scores the next batch of comments. With backfill=true it instead scores
+   * a page of comments saved before scoring existed, starting at the cursor
+   * parameter.
+   */
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    if ("true".equals(request.getParameter("backfill"))) {
+      String cursorString = request.getParameter("cursor");
+      Cursor cursor;
+      try {
+        cursor = cursorString == null ? null : Cursor.fromWebSafeString(cursorString);
+      } catch (IllegalArgumentException e) {
+        System.err.println("Could not decode backfill cursor: " + cursorString);
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+        return;
+      }
+      Cursor next = enricher.backfill(cursor);
+      if (next != null) {
+        QueueFactory.getDefaultQueue().add(TaskOptions.Builder.withUrl(URL)
+            .param("backfill", "true")
+            .param("cursor", next.toWebSafeString()));
+      }
+    } else if (enricher.scoreNextBatch() == CommentEnricher.BATCH_SIZE) {
+      QueueFactory.getDefaultQueue().add(TaskOptions.Builder.withUrl(URL));
+    }
+    response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+  }
+}
@@ -15,133 +15,110 @@
 package com.google.sps.servlets;
 
 import com.google.gson.Gson;
+import com.google.sps.data.SleepSeries;
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.TreeMap;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Set;
-
 
 @WebServlet("/sleep-data")
 public class SleepDataServlet extends HttpServlet {
-  static final int SIZE = 5;
   static final String FILENAME = "/WEB-INF/sleep_data.csv";
 
-  private LinkedHashMap<String, Double[]> sleepData = new LinkedHashMap<>();
+  /** 
+   * Copy-on-write store: readers use whichever snapshot is current, and
+   * writers swap in a new snapshot while holding the servlet's lock.
+   */
+  private volatile SleepSeries sleepData = SleepSeries.empty();
   
 
   /** 
-   * Reads in csv file and parses the data into the sleepData HashMap. Calls 
-   * the movingAverage function to add the moving average data as addition 
-   * elements in the array (value of the HashMap).
+   * Reads in csv file and loads the data, along with its moving averages, 
+   * into the sleepData series.
    */
   @Override
   public void init() {
+    Map<String, SleepSeries.Sample> samples = new TreeMap<>();
     Scanner scanner = new Scanner(getServletContext().getResourceAsStream(FILENAME));
     while (scanner.hasNextLine()) {
-        String line = scanner.nextLine();
-        String[] cells = line.split(",");
-
-        /** 
-         * All timestamps in the file is of the form 2020-06-25T07:26:30Z so we
-         * can parse the date out of the timestamp by splitting at "T".
-         */
-        String timestamp = cells[0];
-        int tindex = timestamp.indexOf("T"); 
-        String date_string = timestamp.substring(0 , tindex);
-        Double[] data = new Double[]{
-                          (double)Integer.parseInt(cells[1]),  
-                          (double)Integer.parseInt(cells[3])
-                        }; 
-        sleepData.put(date_string, data);
+        SleepSeries.Sample sample = parseSample(scanner.nextLine());
+        samples.put(sample.getDate(), sample);
     }
     scanner.close();
-    movingAverage();
+    sleepData = SleepSeries.empty().append(new ArrayList<>(samples.values()));
   }
 
-  /** Produces a JSON response containing the sleepData HashMap. */
+  /** Produces a JSON response containing the sleep data keyed by date. */
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
     response.setContentType("application/json");
     Gson gson = new Gson();
-    String json = gson.toJson(sleepData);
+    String json = gson.toJson(sleepData.toMap());
     response.getWriter().println(json);
   }
 
   /** 
-   * Calculates 7-day moving average for a single data column and returns a list
-   * of the moving average data points.
+   * Appends new nightly samples, sent as csv lines in the same format as the
+   * data file. Every sample must be newer than the latest night already stored.
    */
-  private List<Double> singleMovingAverage(boolean score) {
-    int midway = SIZE / 2;
-    List<Double> origData = new ArrayList<>();
-    Set<String> keys = sleepData.keySet();
-    for(String date:keys){
-      Double[] arr = sleepData.get(date);
-      if (score) {
-        origData.add(arr[0]);
-      }
-      else {
-        origData.add(arr[1]);
-      }
-    }
-    List<Double> maList = new ArrayList<>(); 
-    int sum;
-    double average;
-    for (int i = 0; i < origData.size() ; i++) {
-      sum = 0;
-      average = 0;
-      /** Handles the first few data points. */
-      if (i < midway) {
-        for (int j = 0; j < i + midway + 1; j++) {
-          sum += origData.get(j);
-        }
-        average = sum / (i + midway + 1);
-      }
-      /** Handles the last few data points. */
-      else if (i + midway + 1> origData.size()){
-        for (int j = i - midway; j < origData.size(); j++) {
-          sum += origData.get(j);
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    Map<String, SleepSeries.Sample> samples = new TreeMap<>();
+    BufferedReader reader = request.getReader();
+    String line;
+    try {
+      while ((line = reader.readLine()) != null) {
+        if (!line.trim().isEmpty()) {
+          SleepSeries.Sample sample = parseSample(line.trim());
+          samples.put(sample.getDate(), sample);
         }
-        average = sum / (origData.size() - i + midway);
       }
-      /** Handles the middle data points. */
-      else{
-        for (int j = i - midway; j < i + midway + 1; j++) {
-          sum += origData.get(j);
-        }
-        average = sum / SIZE;
+    } catch (RuntimeException e) {
+      rejectPost(response, "Could not parse sleep data: " + e.getMessage());
+      return;
+    }
+    if (samples.isEmpty()) {
+      rejectPost(response, "No sleep data was sent.");
+      return;
+    }
+
+    synchronized (this) {
+      String latest = sleepData.getLatestDate();
+      String earliest = samples.keySet().iterator().next();
+      if (latest != null && earliest.compareTo(latest) <= 0) {
+        rejectPost(response, "Sleep data for " + earliest + " is not newer than " + latest + ".");
+        return;
       }
-      maList.add(average);
+      sleepData = sleepData.append(new ArrayList<>(samples.values()));
     }
-    return maList;
+    response.setStatus(HttpServletResponse.SC_NO_CONTENT);
   }
 
-  /** 
-   * Combines the moving average data lists with the raw data lists to create a 
-   * new array to replace the values of the HashMap.
-   */
-  private void movingAverage() {
-    List<Double> maSleepScore = singleMovingAverage(true);
-    List<Double> maDeepSleep = singleMovingAverage(false);
-    Set<String> keys = sleepData.keySet();
-    int counter = 0;
-    for (String date: keys) {
-      Double[] arr = sleepData.get(date);
-      Double[] data = new Double[]{
-                        arr[0],  
-                        arr[1],
-                        maSleepScore.get(counter),
-                        maDeepSleep.get(counter)
-                      };
-      counter++;
-      sleepData.put(date, data);
-    }
+  private void rejectPost(HttpServletResponse response, String message) throws IOException {
+    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+    response.setContentType("text/plain");
+    response.getWriter().println(message);
+  }
+
+  /** Parses one csv line, taking the sleep score and deep sleep minutes columns. */
+  private static SleepSeries.Sample parseSample(String line) {
+    String[] cells = line.split(",");
+
+    /** 
+     * All timestamps in the file is of the form 2020-06-25T07:26:30Z so we
+     * can parse the date out of the timestamp by splitting at "T".
+     */
+    String timestamp = cells[0];
+    int tindex = timestamp.indexOf("T"); 
+    String date_string = timestamp.substring(0 , tindex);
+    return new SleepSeries.Sample(
+        date_string, Integer.parseInt(cells[1]), Integer.parseInt(cells[3]));
   }
 }
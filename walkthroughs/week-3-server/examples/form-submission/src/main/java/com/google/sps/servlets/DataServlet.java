@@ -14,24 +14,222 @@
 
 package com.google.sps.servlets;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-@WebServlet("/my-data-url")
+/**
+ * Servlet that echoes a submitted form. The body is read and the response written with
+ * non-blocking I/O, so a slow client holds no container thread while its form trickles in, and
+ * bodies over {@link #MAX_BODY_BYTES} are rejected as soon as they cross the limit.
+ */
+@WebServlet(urlPatterns = "/my-data-url", asyncSupported = true)
 public class DataServlet extends HttpServlet {
 
+  /** The largest form body accepted. The description is by far the largest field. */
+  private static final int MAX_BODY_BYTES = 64 * 1024;
+
+  /** How long a client has to send its form and read the response. */
+  private static final long TIMEOUT_MILLIS = 30 * 1000;
+
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    String name = request.getParameter("name-input");
-    String color = request.getParameter("color-input");
-    String description = request.getParameter("description-input");
-
-    response.setContentType("text/html;");
-    response.getWriter().println("<p>Name: " + name + "</p>");
-    response.getWriter().println("<p>Color: " + color + "</p>");
-    response.getWriter().println("<p>Description: " + description + "</p>");
+    // A declared length over the limit can be turned away before reading anything.
+    if (request.getContentLengthLong() > MAX_BODY_BYTES) {
+      sendError(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Form too large.");
+      return;
+    }
+
+    AsyncContext async = request.startAsync();
+    async.setTimeout(TIMEOUT_MILLIS);
+    async.addListener(
+        new AsyncListener() {
+          @Override
+          public void onTimeout(AsyncEvent event) throws IOException {
+            System.err.println("Timed out handling form from " + request.getRemoteAddr());
+            if (!response.isCommitted()) {
+              response.setStatus(HttpServletResponse.SC_REQUEST_TIMEOUT);
+            }
+            async.complete();
+          }
+
+          @Override
+          public void onComplete(AsyncEvent event) {}
+
+          @Override
+          public void onError(AsyncEvent event) {}
+
+          @Override
+          public void onStartAsync(AsyncEvent event) {}
+        });
+
+    ServletInputStream input = request.getInputStream();
+    input.setReadListener(new FormReader(async, input));
+  }
+
+  /** Collects the form body as it arrives, then parses it and starts writing the response. */
+  private static final class FormReader implements ReadListener {
+    private final AsyncContext async;
+    private final ServletInputStream input;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final byte[] buffer = new byte[8192];
+
+    FormReader(AsyncContext async, ServletInputStream input) {
+      this.async = async;
+      this.input = input;
+    }
+
+    @Override
+    public void onDataAvailable() throws IOException {
+      // Read only while data is ready; returning hands the thread back to the container.
+      while (input.isReady()) {
+        int read = input.read(buffer);
+        if (read == -1) {
+          return;
+        }
+        if (body.size() + read > MAX_BODY_BYTES) {
+          HttpServletResponse response = (HttpServletResponse) async.getResponse();
+          // The rest of the body is never read, so the connection cannot be reused.
+          response.setHeader("Connection", "close");
+          sendError(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Form too large.");
+          async.complete();
+          return;
+        }
+        body.write(buffer, 0, read);
+      }
+    }
+
+    @Override
+    public void onAllDataRead() throws IOException {
+      HttpServletResponse response = (HttpServletResponse) async.getResponse();
+      if (response.isCommitted()) {
+        // The form was already rejected as too large.
+        return;
+      }
+
+      String charset = async.getRequest().getCharacterEncoding();
+      Map<String, String> form;
+      try {
+        form = parseForm(body, charset == null ? StandardCharsets.UTF_8.name() : charset);
+      } catch (IllegalArgumentException | UnsupportedEncodingException e) {
+        System.err.println("Could not parse form: " + e.getMessage());
+        sendError(response, HttpServletResponse.SC_BAD_REQUEST, "Could not read the form.");
+        async.complete();
+        return;
+      }
+
+      StringBuilder html = new StringBuilder(body.size() + 64);
+      appendField(html, "Name", form.get("name-input"));
+      appendField(html, "Color", form.get("color-input"));
+      appendField(html, "Description", form.get("description-input"));
+
+      response.setContentType("text/html; charset=UTF-8");
+      ServletOutputStream output = response.getOutputStream();
+      output.setWriteListener(
+          new ResponseWriter(async, output, html.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      System.err.println("Could not read form: " + t);
+      async.complete();
+    }
+  }
+
+  /** Writes the response as fast as the client accepts it, then completes the request. */
+  private static final class ResponseWriter implements WriteListener {
+    private final AsyncContext async;
+    private final ServletOutputStream output;
+    private final byte[] content;
+    private int written;
+
+    ResponseWriter(AsyncContext async, ServletOutputStream output, byte[] content) {
+      this.async = async;
+      this.output = output;
+      this.content = content;
+    }
+
+    @Override
+    public void onWritePossible() throws IOException {
+      while (output.isReady()) {
+        if (written == content.length) {
+          async.complete();
+          return;
+        }
+        int length = Math.min(8192, content.length - written);
+        output.write(content, written, length);
+        written += length;
+      }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      System.err.println("Could not write response: " + t);
+      async.complete();
+    }
+  }
+
+  /**
+   * Parses an application/x-www-form-urlencoded body, keeping the first value of each field.
+   *
+   * @throws IllegalArgumentException if the body contains a malformed escape
+   */
+  private static Map<String, String> parseForm(ByteArrayOutputStream body, String charset)
+      throws UnsupportedEncodingException {
+    Map<String, String> form = new HashMap<>();
+    String encoded = body.toString(StandardCharsets.ISO_8859_1.name());
+    for (String pair : encoded.split("&")) {
+      if (pair.isEmpty()) {
+        continue;
+      }
+      int equals = pair.indexOf('=');
+      String name = equals == -1 ? pair : pair.substring(0, equals);
+      String value = equals == -1 ? "" : pair.substring(equals + 1);
+      form.putIfAbsent(URLDecoder.decode(name, charset), URLDecoder.decode(value, charset));
+    }
+    return form;
+  }
+
+  private static void appendField(StringBuilder html, String label, String value) {
+    html.append("<p>").append(label).append(": ");
+    if (value == null) {
+      html.append("null");
+    } else {
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c == '<') {
+          html.append("&lt;");
+        } else if (c == '>') {
+          html.append("&gt;");
+        } else if (c == '&') {
+          html.append("&amp;");
+        } else {
+          html.append(c);
+        }
+      }
+    }
+    html.append("</p>\n");
+  }
+
+  private static void sendError(HttpServletResponse response, int status, String message)
+      throws IOException {
+    response.setStatus(status);
+    response.setContentType("text/plain");
+    response.getWriter().println(message);
   }
-}
\ No newline at end of file
+}
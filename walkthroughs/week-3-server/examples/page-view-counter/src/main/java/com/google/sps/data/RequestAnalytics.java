@@ -0,0 +1,322 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.net.URI;
+import java.lang.ref.WeakReference;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects per-path request analytics: views per minute, views per referrer and unique visitors.
+ *
+ * <p>Request threads only write into their own ring buffer, so recording a request never waits on
+ * a lock. {@link #aggregate()} drains those buffers into per-minute buckets, which are kept for the
+ * last {@link #RETAINED_MINUTES} minutes, and forgets the buffers of threads the container has
+ * retired.
+ *
+ * <p>Paths and referrers come from the client, so both are capped across all retained minutes:
+ * past {@link #MAX_PATHS} distinct paths or {@link #MAX_REFERRERS} distinct referrers, new ones are
+ * counted as "(other)". Referrers are reduced to their host and paths are truncated, which bounds
+ * the whole structure to a few tens of megabytes however the requests are crafted.
+ */
+public final class RequestAnalytics {
+
+  public static final int RETAINED_MINUTES = 60;
+
+  /** Distinct paths tracked across all retained minutes, each costing a 1 KB sketch per minute. */
+  public static final int MAX_PATHS = 200;
+
+  /** Distinct referrer hosts tracked across all retained minutes. */
+  public static final int MAX_REFERRERS = 1000;
+
+  private static final int BUFFER_CAPACITY = 4096;
+  private static final int MAX_REFERRERS_PER_PATH = 20;
+  private static final int MAX_PATH_LENGTH = 200;
+  private static final int MAX_HOST_LENGTH = 255;
+  private static final String OTHER = "(other)";
+  private static final String NO_REFERRER = "(none)";
+
+  private static final RequestAnalytics INSTANCE = new RequestAnalytics();
+
+  /** Returns the analytics shared by the filter that records requests and the report servlet. */
+  public static RequestAnalytics getInstance() {
+    return INSTANCE;
+  }
+
+  private final List<RequestBuffer> buffers = new CopyOnWriteArrayList<>();
+  private final ThreadLocal<RequestBuffer> threadBuffer =
+      ThreadLocal.withInitial(
+          () -> {
+            RequestBuffer buffer = new RequestBuffer(Thread.currentThread());
+            buffers.add(buffer);
+            return buffer;
+          });
+
+  /** Requests dropped because their thread's buffer was full. */
+  private final LongAdder droppedRequests = new LongAdder();
+
+  /** Path stats keyed by the minute (in epoch minutes) they were recorded in. */
+  private final TreeMap<Long, Map<String, PathStats>> minuteBuckets = new TreeMap<>();
+
+  /** Every path and referrer in the retained buckets, rebuilt when buckets expire. */
+  private final Set<String> knownPaths = new HashSet<>();
+  private final Set<String> knownReferrers = new HashSet<>();
+
+  private RequestAnalytics() {}
+
+  /**
+   * Records one request. Called from request threads; never blocks, and drops the request if the
+   * aggregator has fallen a full buffer behind.
+   */
+  public void record(String path, String referrer, long visitorHash, long timeMillis) {
+    if (path.length() > MAX_PATH_LENGTH) {
+      path = path.substring(0, MAX_PATH_LENGTH);
+    }
+    if (!threadBuffer.get().offer(path, referrerHost(referrer), visitorHash, timeMillis)) {
+      droppedRequests.increment();
+    }
+  }
+
+  /** Returns how many requests were dropped because the aggregator could not keep up. */
+  public long getDroppedRequests() {
+    return droppedRequests.sum();
+  }
+
+  /** Moves every recorded request into the per-minute buckets and drops expired buckets. */
+  public synchronized void aggregate() {
+    List<RequestBuffer> orphaned = new ArrayList<>();
+    for (RequestBuffer buffer : buffers) {
+      // Checked before draining: a thread that was already dead can't have written anything the
+      // drain misses, so its buffer is empty afterwards and can go.
+      boolean ownerDead = !buffer.isOwnerAlive();
+      buffer.drainTo(this);
+      if (ownerDead) {
+        orphaned.add(buffer);
+      }
+    }
+    buffers.removeAll(orphaned);
+    long currentMinute = TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis());
+    Map<Long, Map<String, PathStats>> expired =
+        minuteBuckets.headMap(currentMinute - RETAINED_MINUTES + 1);
+    if (!expired.isEmpty()) {
+      expired.clear();
+      knownPaths.clear();
+      knownReferrers.clear();
+      for (Map<String, PathStats> bucket : minuteBuckets.values()) {
+        for (PathStats stats : bucket.values()) {
+          knownPaths.add(stats.path);
+          knownReferrers.addAll(stats.referrerViews.keySet());
+        }
+      }
+    }
+  }
+
+  /** Returns the host a Referer header points at, or NO_REFERRER or OTHER if it has none. */
+  private static String referrerHost(String referrer) {
+    if (referrer == null) {
+      return NO_REFERRER;
+    }
+    String host;
+    try {
+      host = new URI(referrer).getHost();
+    } catch (URISyntaxException e) {
+      return OTHER;
+    }
+    if (host == null) {
+      return OTHER;
+    }
+    return host.length() > MAX_HOST_LENGTH ? host.substring(0, MAX_HOST_LENGTH) : host;
+  }
+
+  private void add(String path, String referrer, long visitorHash, long timeMillis) {
+    long minute = TimeUnit.MILLISECONDS.toMinutes(timeMillis);
+    Map<String, PathStats> bucket = minuteBuckets.get(minute);
+    if (bucket == null) {
+      bucket = new HashMap<>();
+      minuteBuckets.put(minute, bucket);
+    }
+    // Cap distinct paths and referrers so requests for random URLs can't use unbounded memory.
+    if (!knownPaths.contains(path)) {
+      if (knownPaths.size() >= MAX_PATHS) {
+        path = OTHER;
+      }
+      knownPaths.add(path);
+    }
+    if (!knownReferrers.contains(referrer)) {
+      if (knownReferrers.size() >= MAX_REFERRERS) {
+        referrer = OTHER;
+      }
+      knownReferrers.add(referrer);
+    }
+    PathStats stats = bucket.get(path);
+    if (stats == null) {
+      stats = new PathStats(path);
+      bucket.put(path, stats);
+    }
+    stats.add(referrer, visitorHash);
+  }
+
+  /** Returns the total views in each retained minute, keyed by epoch minute. */
+  public synchronized SortedMap<Long, Long> getViewsPerMinute() {
+    SortedMap<Long, Long> viewsPerMinute = new TreeMap<>();
+    for (Map.Entry<Long, Map<String, PathStats>> bucket : minuteBuckets.entrySet()) {
+      long views = 0;
+      for (PathStats stats : bucket.getValue().values()) {
+        views += stats.views;
+      }
+      viewsPerMinute.put(bucket.getKey(), views);
+    }
+    return viewsPerMinute;
+  }
+
+  /** Returns each path's stats summed over all retained minutes, most viewed first. */
+  public synchronized List<PathStats> getPathStats() {
+    Map<String, PathStats> totals = new HashMap<>();
+    for (Map<String, PathStats> bucket : minuteBuckets.values()) {
+      for (PathStats stats : bucket.values()) {
+        PathStats total = totals.get(stats.path);
+        if (total == null) {
+          total = new PathStats(stats.path);
+          totals.put(stats.path, total);
+        }
+        total.merge(stats);
+      }
+    }
+    List<PathStats> pathStats = new ArrayList<>(totals.values());
+    Collections.sort(pathStats, (a, b) -> Long.compare(b.views, a.views));
+    return pathStats;
+  }
+
+  /** Views, referrers and unique visitors for one path. */
+  public static final class PathStats {
+    private final String path;
+    private final Map<String, Long> referrerViews = new HashMap<>();
+    private final HyperLogLog visitors = new HyperLogLog();
+    private long views = 0;
+
+    private PathStats(String path) {
+      this.path = path;
+    }
+
+    private void add(String referrer, long visitorHash) {
+      if (referrerViews.size() >= MAX_REFERRERS_PER_PATH && !referrerViews.containsKey(referrer)) {
+        referrer = OTHER;
+      }
+      views++;
+      referrerViews.merge(referrer, 1L, Long::sum);
+      visitors.add(visitorHash);
+    }
+
+    private void merge(PathStats other) {
+      views += other.views;
+      for (Map.Entry<String, Long> entry : other.referrerViews.entrySet()) {
+        referrerViews.merge(entry.getKey(), entry.getValue(), Long::sum);
+      }
+      visitors.merge(other.visitors);
+    }
+
+    public String getPath() {
+      return path;
+    }
+
+    public long getViews() {
+      return views;
+    }
+
+    public long getUniqueVisitors() {
+      return visitors.estimate();
+    }
+
+    /** Returns the referrers that sent the most views to this path, most views first. */
+    public List<Map.Entry<String, Long>> getTopReferrers(int limit) {
+      List<Map.Entry<String, Long>> referrers = new ArrayList<>(referrerViews.entrySet());
+      Collections.sort(referrers, (a, b) -> Long.compare(b.getValue(), a.getValue()));
+      return referrers.subList(0, Math.min(limit, referrers.size()));
+    }
+  }
+
+  /**
+   * A single-producer, single-consumer ring buffer. Only the owning request thread writes to it and
+   * only the aggregator reads from it, so the head and tail counters are enough to coordinate them
+   * without locks.
+   */
+  private static final class RequestBuffer {
+    private static final int MASK = BUFFER_CAPACITY - 1;
+
+    private final String[] paths = new String[BUFFER_CAPACITY];
+    private final String[] referrers = new String[BUFFER_CAPACITY];
+    private final long[] visitorHashes = new long[BUFFER_CAPACITY];
+    private final long[] timesMillis = new long[BUFFER_CAPACITY];
+
+    /** Number of requests written. Only the producer advances it. */
+    private final AtomicLong head = new AtomicLong();
+
+    /** Number of requests read. Only the consumer advances it. */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** The thread that writes to this buffer, held weakly so the buffer doesn't keep it alive. */
+    private final WeakReference<Thread> owner;
+
+    RequestBuffer(Thread owner) {
+      this.owner = new WeakReference<>(owner);
+    }
+
+    boolean isOwnerAlive() {
+      Thread thread = owner.get();
+      return thread != null && thread.isAlive();
+    }
+
+    boolean offer(String path, String referrer, long visitorHash, long timeMillis) {
+      long position = head.get();
+      if (position - tail.get() == BUFFER_CAPACITY) {
+        return false;
+      }
+      int index = (int) (position & MASK);
+      paths[index] = path;
+      referrers[index] = referrer;
+      visitorHashes[index] = visitorHash;
+      timesMillis[index] = timeMillis;
+      // Publishes the slot to the consumer.
+      head.lazySet(position + 1);
+      return true;
+    }
+
+    void drainTo(RequestAnalytics analytics) {
+      long position = tail.get();
+      long end = head.get();
+      for (; position < end; position++) {
+        int index = (int) (position & MASK);
+        analytics.add(paths[index], referrers[index], visitorHashes[index], timesMillis[index]);
+        paths[index] = null;
+        referrers[index] = null;
+      }
+      // Hands the drained slots back to the producer.
+      tail.lazySet(position);
+    }
+  }
+}
@@ -0,0 +1,87 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Transaction;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A counter stored in Datastore as several shard entities. Each increment only
+ * touches one randomly chosen shard, so concurrent writers rarely contend on the
+ * same entity, and the total is the sum of all shards.
+ */
+public final class ShardedCounter {
+
+  private static final String SHARD_KIND = "CounterShard";
+  private static final String COUNT_PROPERTY = "count";
+  private static final int MAX_RETRIES = 3;
+
+  private final DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+  private final List<Key> shardKeys = new ArrayList<>();
+
+  /** Creates a counter called `name` that is split across `numShards` entities. */
+  public ShardedCounter(String name, int numShards) {
+    for (int i = 0; i < numShards; i++) {
+      shardKeys.add(KeyFactory.createKey(SHARD_KIND, name + "-" + i));
+    }
+  }
+
+  /** Adds `delta` to one shard, retrying if another instance updated it at the same time. */
+  public void add(long delta) {
+    Key shardKey = shardKeys.get(ThreadLocalRandom.current().nextInt(shardKeys.size()));
+    for (int attempt = 1; ; attempt++) {
+      Transaction transaction = datastore.beginTransaction();
+      try {
+        Entity shard;
+        try {
+          shard = datastore.get(transaction, shardKey);
+        } catch (EntityNotFoundException e) {
+          shard = new Entity(shardKey);
+          shard.setProperty(COUNT_PROPERTY, 0L);
+        }
+        shard.setProperty(COUNT_PROPERTY, (long) shard.getProperty(COUNT_PROPERTY) + delta);
+        datastore.put(transaction, shard);
+        transaction.commit();
+        return;
+      } catch (ConcurrentModificationException e) {
+        if (attempt == MAX_RETRIES) {
+          throw e;
+        }
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    }
+  }
+
+  /** Returns the total count, read from all shards in a single batch get. */
+  public long getCount() {
+    long total = 0;
+    for (Entity shard : datastore.get(shardKeys).values()) {
+      total += (long) shard.getProperty(COUNT_PROPERTY);
+    }
+    return total;
+  }
+}
@@ -0,0 +1,80 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.filters;
+
+import com.google.sps.data.HyperLogLog;
+import com.google.sps.data.RequestAnalytics;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Filter that records every request into {@link RequestAnalytics}. Recording only writes to the
+ * request thread's own buffer; a background thread aggregates the buffers once a second.
+ */
+@WebFilter("/*")
+public final class AnalyticsFilter implements Filter {
+
+  private static final long AGGREGATE_INTERVAL_MILLIS = 1000;
+
+  private final RequestAnalytics analytics = RequestAnalytics.getInstance();
+  private ScheduledExecutorService aggregator;
+
+  @Override
+  public void init(FilterConfig filterConfig) {
+    aggregator =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "request-analytics-aggregator");
+              thread.setDaemon(true);
+              return thread;
+            });
+    aggregator.scheduleWithFixedDelay(
+        analytics::aggregate,
+        AGGREGATE_INTERVAL_MILLIS,
+        AGGREGATE_INTERVAL_MILLIS,
+        TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    if (request instanceof HttpServletRequest) {
+      HttpServletRequest httpRequest = (HttpServletRequest) request;
+      // There are no accounts, so a visitor is approximated by their address and browser.
+      String visitor = httpRequest.getRemoteAddr() + "\n" + httpRequest.getHeader("User-Agent");
+      analytics.record(
+          httpRequest.getRequestURI(),
+          httpRequest.getHeader("Referer"),
+          HyperLogLog.hash(visitor),
+          System.currentTimeMillis());
+    }
+    chain.doFilter(request, response);
+  }
+
+  @Override
+  public void destroy() {
+    aggregator.shutdownNow();
+  }
+}
@@ -0,0 +1,84 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.data.RequestAnalytics;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/** Servlet that returns HTML that contains views per path, per minute and per referrer. */
+@WebServlet("/analytics")
+public class AnalyticsServlet extends HttpServlet {
+
+  private static final int TOP_REFERRERS = 3;
+
+  private final RequestAnalytics analytics = RequestAnalytics.getInstance();
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    // Include requests recorded since the background aggregator last ran.
+    analytics.aggregate();
+
+    response.setContentType("text/html;");
+    PrintWriter out = response.getWriter();
+    out.println("<h1>Analytics</h1>");
+    out.println("<p>Last " + RequestAnalytics.RETAINED_MINUTES + " minutes.</p>");
+
+    out.println("<h2>Views per path</h2>");
+    out.println("<table>");
+    out.println("<tr><th>Path</th><th>Views</th><th>Unique visitors</th><th>Top referrers</th></tr>");
+    for (RequestAnalytics.PathStats stats : analytics.getPathStats()) {
+      StringBuilder referrers = new StringBuilder();
+      for (Map.Entry<String, Long> referrer : stats.getTopReferrers(TOP_REFERRERS)) {
+        if (referrers.length() > 0) {
+          referrers.append("<br>");
+        }
+        referrers.append(escapeHtml(referrer.getKey())).append(" (").append(referrer.getValue());
+        referrers.append(")");
+      }
+      out.println(
+          "<tr><td>" + escapeHtml(stats.getPath()) + "</td><td>" + stats.getViews() + "</td><td>"
+              + stats.getUniqueVisitors() + "</td><td>" + referrers + "</td></tr>");
+    }
+    out.println("</table>");
+
+    out.println("<h2>Views per minute</h2>");
+    out.println("<table>");
+    out.println("<tr><th>Minute</th><th>Views</th></tr>");
+    for (Map.Entry<Long, Long> minute : analytics.getViewsPerMinute().entrySet()) {
+      Date start = new Date(TimeUnit.MINUTES.toMillis(minute.getKey()));
+      out.println("<tr><td>" + start + "</td><td>" + minute.getValue() + "</td></tr>");
+    }
+    out.println("</table>");
+
+    long dropped = analytics.getDroppedRequests();
+    if (dropped > 0) {
+      out.println("<p>" + dropped + " requests were not counted because the server was too busy.</p>");
+    }
+  }
+
+  /** Paths and referrers come from the client, so they must be escaped before being printed. */
+  private static String escapeHtml(String text) {
+    return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;")
+        .replace("\"", "&quot;");
+  }
+}
@@ -14,7 +14,10 @@
 
 package com.google.sps.servlets;
 
+import com.google.sps.data.ShardedCounter;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -24,14 +27,73 @@ import javax.servlet.http.HttpServletResponse;
 @WebServlet("/page-views")
 public class PageViewServlet extends HttpServlet {
 
-  private int pageViews = 0;
+  private static final int NUM_SHARDS = 20;
+  private static final long FLUSH_INTERVAL_MILLIS = 10 * 1000;
+
+  /** Durable count shared by every instance of the app. */
+  private final ShardedCounter storedViews = new ShardedCounter("page-views", NUM_SHARDS);
+
+  /**
+   * Views seen by this instance. The servlet is called from many threads at once, and a
+   * LongAdder lets them all count without losing updates or waiting on each other.
+   */
+  private final LongAdder localViews = new LongAdder();
+
+  /** Ensures only one request at a time writes this instance's views to Datastore. */
+  private final AtomicBoolean flushing = new AtomicBoolean(false);
+
+  /** How many of the local views have been written to Datastore. Only changed while flushing. */
+  private long flushedViews = 0;
+
+  /** Stored total minus flushed local views, so that adding localViews gives the current count. */
+  private volatile long baselineViews = 0;
+
+  private volatile long nextFlushMillis = 0;
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    pageViews++;
+    localViews.increment();
+    maybeFlush();
+    long pageViews = baselineViews + localViews.sum();
 
     response.setContentType("text/html;");
     response.getWriter().println("<h1>Page Views</h1>");
     response.getWriter().println("<p>This page has been viewed " + pageViews + " times.</p>");
   }
+
+  @Override
+  public void destroy() {
+    flush();
+  }
+
+  /**
+   * Writes the local views to Datastore if the flush interval has passed. App Engine only allows
+   * Datastore calls from request threads, so flushing piggybacks on a request instead of running
+   * on a timer.
+   */
+  private void maybeFlush() {
+    if (System.currentTimeMillis() >= nextFlushMillis) {
+      flush();
+    }
+  }
+
+  private void flush() {
+    if (!flushing.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      long pendingViews = localViews.sum() - flushedViews;
+      if (pendingViews > 0) {
+        storedViews.add(pendingViews);
+        flushedViews += pendingViews;
+      }
+      baselineViews = storedViews.getCount() - flushedViews;
+    } catch (RuntimeException e) {
+      // Unflushed views stay in localViews and are written by the next flush.
+      System.err.println("Could not flush page views: " + e);
+    } finally {
+      nextFlushMillis = System.currentTimeMillis() + FLUSH_INTERVAL_MILLIS;
+      flushing.set(false);
+    }
+  }
 }
@@ -0,0 +1,48 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Query;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads quotes from Datastore entities of kind "Quote", with a "text" property and an optional
+ * numeric "weight" property.
+ */
+public final class DatastoreQuoteSource implements QuoteSource {
+
+  private static final int BATCH_SIZE = 500;
+
+  @Override
+  public QuoteTable load() {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Query query = new Query("Quote");
+
+    List<String> quotes = new ArrayList<>();
+    List<Double> weights = new ArrayList<>();
+    for (Entity entity :
+        datastore.prepare(query).asIterable(FetchOptions.Builder.withChunkSize(BATCH_SIZE))) {
+      Object weight = entity.getProperty("weight");
+      quotes.add((String) entity.getProperty("text"));
+      weights.add(weight instanceof Number ? ((Number) weight).doubleValue() : 1.0);
+    }
+    return QuoteTable.fromQuotes(quotes, weights);
+  }
+}
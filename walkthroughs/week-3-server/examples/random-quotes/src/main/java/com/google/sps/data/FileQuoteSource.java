@@ -0,0 +1,102 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Loads quotes from a UTF-8 text file with one quote per line. A line may start with a weight and
+ * a tab, e.g. "2.5\tQuote", to be chosen more or less often than the default weight of 1. Blank
+ * lines and lines starting with '#' are ignored.
+ *
+ * <p>The file is memory-mapped and the table points into the mapping, so large files are paged in
+ * by the OS instead of being copied onto the heap.
+ */
+public final class FileQuoteSource implements QuoteSource {
+
+  private final Path file;
+
+  public FileQuoteSource(Path file) {
+    this.file = file;
+  }
+
+  @Override
+  public QuoteTable load() throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      // The mapping stays valid after the channel is closed.
+      return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /** Builds a table over quotes in the file format above, without copying the quote bytes. */
+  public static QuoteTable parse(ByteBuffer data) {
+    int[] offsets = new int[16];
+    int[] lengths = new int[16];
+    double[] weights = new double[16];
+    int count = 0;
+
+    int lineStart = 0;
+    int limit = data.limit();
+    while (lineStart < limit) {
+      int lineEnd = lineStart;
+      while (lineEnd < limit && data.get(lineEnd) != '\n') {
+        lineEnd++;
+      }
+      int next = lineEnd + 1;
+      if (lineEnd > lineStart && data.get(lineEnd - 1) == '\r') {
+        lineEnd--;
+      }
+
+      if (lineEnd > lineStart && data.get(lineStart) != '#') {
+        int quoteStart = lineStart;
+        double weight = 1;
+        for (int i = lineStart; i < lineEnd; i++) {
+          if (data.get(i) == '\t') {
+            weight = Double.parseDouble(ascii(data, lineStart, i));
+            quoteStart = i + 1;
+            break;
+          }
+        }
+        if (count == offsets.length) {
+          offsets = Arrays.copyOf(offsets, count * 2);
+          lengths = Arrays.copyOf(lengths, count * 2);
+          weights = Arrays.copyOf(weights, count * 2);
+        }
+        offsets[count] = quoteStart;
+        lengths[count] = lineEnd - quoteStart;
+        weights[count] = weight;
+        count++;
+      }
+      lineStart = next;
+    }
+
+    return new QuoteTable(data, Arrays.copyOf(offsets, count), Arrays.copyOf(lengths, count),
+        Arrays.copyOf(weights, count));
+  }
+
+  private static String ascii(ByteBuffer data, int start, int end) {
+    byte[] bytes = new byte[end - start];
+    for (int i = start; i < end; i++) {
+      bytes[i - start] = data.get(i);
+    }
+    return new String(bytes, StandardCharsets.US_ASCII).trim();
+  }
+}
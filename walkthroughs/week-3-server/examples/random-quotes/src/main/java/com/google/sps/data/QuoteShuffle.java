@@ -0,0 +1,82 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Deals out every quote once, in random order, before any quote repeats. The order is a
+ * pseudorandom permutation computed from a seed, so a session only stores two numbers instead of
+ * a shuffled copy of the whole table.
+ */
+public final class QuoteShuffle implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+  private static final int ROUNDS = 4;
+
+  private final int size;
+  private long seed;
+  private int position = 0;
+
+  public QuoteShuffle(int size) {
+    this.size = size;
+    this.seed = ThreadLocalRandom.current().nextLong();
+  }
+
+  /** Returns whether this shuffle was made for a table with `size` quotes. */
+  public boolean fits(int size) {
+    return this.size == size;
+  }
+
+  /** Returns the next quote index, starting a new permutation once every index has been dealt. */
+  public synchronized int next() {
+    if (position == size) {
+      seed = ThreadLocalRandom.current().nextLong();
+      position = 0;
+    }
+    return permute(position++);
+  }
+
+  /**
+   * Maps `index` to its place in the permutation with a small Feistel network over the smallest
+   * even number of bits that covers `size`. The network is a bijection on that range, and values
+   * outside [0, size) are fed back in until they land inside it.
+   */
+  private int permute(int index) {
+    int bits = Math.max(2, 32 - Integer.numberOfLeadingZeros(size - 1));
+    int halfBits = (bits + 1) / 2;
+    int halfMask = (1 << halfBits) - 1;
+    long value = index;
+    do {
+      long left = value >>> halfBits;
+      long right = value & halfMask;
+      for (int round = 0; round < ROUNDS; round++) {
+        long mixed = left ^ (roundFunction(right, round) & halfMask);
+        left = right;
+        right = mixed;
+      }
+      value = (left << halfBits) | right;
+    } while (value >= size);
+    return (int) value;
+  }
+
+  private long roundFunction(long half, int round) {
+    long x = half * 0x9e3779b97f4a7c15L + seed + round * 0xbf58476d1ce4e5b9L;
+    x ^= x >>> 31;
+    x *= 0x94d049bb133111ebL;
+    return x ^ (x >>> 29);
+  }
+}
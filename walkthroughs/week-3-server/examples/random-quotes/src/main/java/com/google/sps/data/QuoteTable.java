@@ -0,0 +1,147 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An immutable table of quotes stored as UTF-8 bytes in one buffer, which may be a memory-mapped
+ * file, plus the offset and length of each quote. Quotes are never turned into Strings, so serving
+ * one only copies its bytes to the response.
+ *
+ * <p>Random quotes are chosen in proportion to their weights with an alias table, which takes
+ * constant time no matter how many quotes there are.
+ */
+public final class QuoteTable {
+
+  private final ByteBuffer data;
+  private final int[] offsets;
+  private final int[] lengths;
+
+  /** Alias table: pick a column uniformly, then keep it with probability[column] or use alias. */
+  private final double[] probability;
+  private final int[] alias;
+
+  /**
+   * Each thread's own view of the data and copy buffer, created once, so serving a quote doesn't
+   * allocate and threads don't share a buffer position.
+   */
+  private final ThreadLocal<ByteBuffer> threadView;
+  private final ThreadLocal<byte[]> scratch;
+
+  /**
+   * Creates a table over `data`, where quote i is the `lengths[i]` bytes at `offsets[i]`.
+   *
+   * @throws IllegalArgumentException if there are no quotes or a weight isn't positive
+   */
+  public QuoteTable(ByteBuffer data, int[] offsets, int[] lengths, double[] weights) {
+    if (offsets.length == 0) {
+      throw new IllegalArgumentException("There are no quotes.");
+    }
+    this.data = data.asReadOnlyBuffer();
+    this.offsets = offsets;
+    this.lengths = lengths;
+    int maxLength = Arrays.stream(lengths).max().getAsInt();
+    this.threadView = ThreadLocal.withInitial(this.data::duplicate);
+    this.scratch = ThreadLocal.withInitial(() -> new byte[maxLength]);
+    this.probability = new double[offsets.length];
+    this.alias = new int[offsets.length];
+    buildAliasTable(weights);
+  }
+
+  /** Creates a table from quotes held in memory, e.g. loaded from Datastore. */
+  public static QuoteTable fromQuotes(List<String> quotes, List<Double> weights) {
+    byte[][] encoded = new byte[quotes.size()][];
+    int totalLength = 0;
+    for (int i = 0; i < encoded.length; i++) {
+      encoded[i] = quotes.get(i).getBytes(StandardCharsets.UTF_8);
+      totalLength += encoded[i].length;
+    }
+    ByteBuffer data = ByteBuffer.allocate(totalLength);
+    int[] offsets = new int[encoded.length];
+    int[] lengths = new int[encoded.length];
+    for (int i = 0; i < encoded.length; i++) {
+      offsets[i] = data.position();
+      lengths[i] = encoded[i].length;
+      data.put(encoded[i]);
+    }
+    double[] weightArray = weights.stream().mapToDouble(Double::doubleValue).toArray();
+    return new QuoteTable(data, offsets, lengths, weightArray);
+  }
+
+  /** Vose's alias method: splits the weights into equal columns of at most two quotes each. */
+  private void buildAliasTable(double[] weights) {
+    int n = weights.length;
+    double total = 0;
+    for (double weight : weights) {
+      if (!(weight > 0)) {
+        throw new IllegalArgumentException("Weights must be positive.");
+      }
+      total += weight;
+    }
+    double[] scaled = new double[n];
+    Deque<Integer> small = new ArrayDeque<>();
+    Deque<Integer> large = new ArrayDeque<>();
+    for (int i = 0; i < n; i++) {
+      scaled[i] = weights[i] * n / total;
+      (scaled[i] < 1 ? small : large).push(i);
+    }
+    while (!small.isEmpty() && !large.isEmpty()) {
+      int less = small.pop();
+      int more = large.pop();
+      probability[less] = scaled[less];
+      alias[less] = more;
+      scaled[more] = scaled[more] + scaled[less] - 1;
+      (scaled[more] < 1 ? small : large).push(more);
+    }
+    // Whatever is left is 1 up to rounding error.
+    while (!large.isEmpty()) {
+      probability[large.pop()] = 1;
+    }
+    while (!small.isEmpty()) {
+      probability[small.pop()] = 1;
+    }
+  }
+
+  /** Returns the number of quotes. */
+  public int size() {
+    return offsets.length;
+  }
+
+  /** Returns the index of a random quote, chosen in proportion to its weight. */
+  public int randomIndex() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int column = random.nextInt(offsets.length);
+    return random.nextDouble() < probability[column] ? column : alias[column];
+  }
+
+  /** Writes the UTF-8 bytes of quote `index` to `out`. */
+  public void writeTo(int index, OutputStream out) throws IOException {
+    int length = lengths[index];
+    byte[] buffer = scratch.get();
+    ByteBuffer view = threadView.get();
+    view.position(offsets[index]);
+    view.get(buffer, 0, length);
+    out.write(buffer, 0, length);
+  }
+}
@@ -14,45 +14,101 @@
 
 package com.google.sps.servlets;
 
+import com.google.sps.data.DatastoreQuoteSource;
+import com.google.sps.data.FileQuoteSource;
+import com.google.sps.data.QuoteShuffle;
+import com.google.sps.data.QuoteSource;
+import com.google.sps.data.QuoteTable;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.annotation.WebInitParam;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
 
-/** Servlet that returns a random quote. */
-@WebServlet("/random-quote")
+/**
+ * Servlet that returns a random quote.
+ *
+ * <p>Quotes come from /WEB-INF/quotes.txt, or from Datastore when the `source` init parameter is
+ * "datastore". Requesting `?no-repeat=true` deals every quote once per session before repeating.
+ */
+@WebServlet(
+    urlPatterns = "/random-quote",
+    initParams = @WebInitParam(name = "source", value = "file"))
 public final class RandomQuoteServlet extends HttpServlet {
 
-  private List<String> quotes;
+  private static final String QUOTES_FILE = "/WEB-INF/quotes.txt";
+  private static final String SHUFFLE_ATTRIBUTE = "quote-shuffle";
+  private static final byte[] NEWLINE = {'\n'};
+
+  private QuoteTable quotes;
 
   @Override
-  public void init() {
-    quotes = new ArrayList<>();
-    quotes.add(
-        "A ship in port is safe, but that is not what ships are for. "
-            + "Sail out to sea and do new things. - Grace Hopper");
-    quotes.add("They told me computers could only do arithmetic. - Grace Hopper");
-    quotes.add("A ship in port is safe, but that's not what ships are built for. - Grace Hopper");
-    quotes.add("It is much easier to apologise than it is to get permission. - Grace Hopper");
-    quotes.add("If you can't give me poetry, can't you give me poetical science? - Ada Lovelace");
-    quotes.add("I am in a charming state of confusion. - Ada Lovelace");
-    quotes.add(
-        "The Analytical Engine weaves algebraic patterns, "
-            + "just as the Jacquard loom weaves flowers and leaves. - Ada Lovelace");
-    quotes.add(
-        "Sometimes it is the people no one can imagine anything of "
-            + "who do the things no one can imagine. - Alan Turing");
-    quotes.add("Those who can imagine anything, can create the impossible. - Alan Turing");
+  public void init() throws ServletException {
+    try {
+      quotes = getQuoteSource().load();
+    } catch (IOException | RuntimeException e) {
+      throw new ServletException("Could not load quotes", e);
+    }
+  }
+
+  private QuoteSource getQuoteSource() throws IOException {
+    if ("datastore".equals(getInitParameter("source"))) {
+      return new DatastoreQuoteSource();
+    }
+    String path = getServletContext().getRealPath(QUOTES_FILE);
+    if (path != null) {
+      return new FileQuoteSource(Paths.get(path));
+    }
+    // The WAR wasn't unpacked, so there is no file to map; read the resource onto the heap.
+    ByteBuffer data = ByteBuffer.wrap(readResource(QUOTES_FILE));
+    return () -> FileQuoteSource.parse(data);
+  }
+
+  private byte[] readResource(String name) throws IOException {
+    try (InputStream in = getServletContext().getResourceAsStream(name)) {
+      if (in == null) {
+        throw new IOException("Missing " + name);
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    }
   }
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    String quote = quotes.get((int) (Math.random() * quotes.size()));
+    int index;
+    if (Boolean.parseBoolean(request.getParameter("no-repeat"))) {
+      index = getShuffle(request.getSession()).next();
+    } else {
+      index = quotes.randomIndex();
+    }
+
+    response.setContentType("text/html;charset=UTF-8");
+    ServletOutputStream out = response.getOutputStream();
+    quotes.writeTo(index, out);
+    out.write(NEWLINE);
+  }
 
-    response.setContentType("text/html;");
-    response.getWriter().println(quote);
+  private QuoteShuffle getShuffle(HttpSession session) {
+    QuoteShuffle shuffle = (QuoteShuffle) session.getAttribute(SHUFFLE_ATTRIBUTE);
+    if (shuffle == null || !shuffle.fits(quotes.size())) {
+      shuffle = new QuoteShuffle(quotes.size());
+    }
+    // Setting the attribute on every request marks the session as changed so it gets saved.
+    session.setAttribute(SHUFFLE_ATTRIBUTE, shuffle);
+    return shuffle;
   }
 }
@@ -0,0 +1,157 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A request recorded by the capture filter: everything needed to send it again. Form posts are
+ * recorded with their parameters encoded into the body and no query string, since the container
+ * has already consumed the original body by the time the parameters can be read.
+ */
+public final class CapturedRequest {
+
+  private final long nanoTime;
+  private final String method;
+  private final String uri;
+  private final String queryString;
+  private final List<String[]> headers;
+  private final byte[] body;
+  private final boolean bodyTruncated;
+
+  /**
+   * @param nanoTime the {@link System#nanoTime()} at which the request arrived, so replays can
+   *     keep the original spacing between requests
+   * @param headers name and value pairs, with one pair per value of repeated headers
+   * @param bodyTruncated whether the request body was longer than the recorded bytes
+   */
+  public CapturedRequest(
+      long nanoTime,
+      String method,
+      String uri,
+      String queryString,
+      List<String[]> headers,
+      byte[] body,
+      boolean bodyTruncated) {
+    this.nanoTime = nanoTime;
+    this.method = method;
+    this.uri = uri;
+    this.queryString = queryString;
+    this.headers = Collections.unmodifiableList(new ArrayList<>(headers));
+    this.body = body;
+    this.bodyTruncated = bodyTruncated;
+  }
+
+  public long getNanoTime() {
+    return nanoTime;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public String getUri() {
+    return uri;
+  }
+
+  /** Returns the query string without the leading '?', or null if there was none. */
+  public String getQueryString() {
+    return queryString;
+  }
+
+  public List<String[]> getHeaders() {
+    return headers;
+  }
+
+  /** Returns the recorded body. Callers must not modify the returned array. */
+  public byte[] getBody() {
+    return body;
+  }
+
+  public boolean isBodyTruncated() {
+    return bodyTruncated;
+  }
+
+  /** Returns the URI with its query string, as it appeared on the request line. */
+  public String getPathAndQuery() {
+    return queryString == null ? uri : uri + "?" + queryString;
+  }
+
+  /**
+   * Appends this request to a capture log. Each record starts with a marker byte so that logs
+   * can be concatenated and read until end of file.
+   */
+  public void writeTo(DataOutputStream out) throws IOException {
+    out.writeByte(1);
+    out.writeLong(nanoTime);
+    writeString(out, method);
+    writeString(out, uri);
+    out.writeBoolean(queryString != null);
+    if (queryString != null) {
+      writeString(out, queryString);
+    }
+    out.writeInt(headers.size());
+    for (String[] header : headers) {
+      writeString(out, header[0]);
+      writeString(out, header[1]);
+    }
+    out.writeBoolean(bodyTruncated);
+    out.writeInt(body.length);
+    out.write(body);
+  }
+
+  /** Reads the next request from a capture log, or returns null at the end of the log. */
+  public static CapturedRequest readFrom(DataInputStream in) throws IOException {
+    int marker = in.read();
+    if (marker == -1) {
+      return null;
+    }
+    if (marker != 1) {
+      throw new IOException("Not a capture log record: " + marker);
+    }
+    long nanoTime = in.readLong();
+    String method = readString(in);
+    String uri = readString(in);
+    String queryString = in.readBoolean() ? readString(in) : null;
+    int headerCount = in.readInt();
+    List<String[]> headers = new ArrayList<>(headerCount);
+    for (int i = 0; i < headerCount; i++) {
+      headers.add(new String[] {readString(in), readString(in)});
+    }
+    boolean bodyTruncated = in.readBoolean();
+    byte[] body = new byte[in.readInt()];
+    in.readFully(body);
+    return new CapturedRequest(nanoTime, method, uri, queryString, headers, body, bodyTruncated);
+  }
+
+  /** Writes a length-prefixed string; unlike writeUTF this has no 64 KB limit. */
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
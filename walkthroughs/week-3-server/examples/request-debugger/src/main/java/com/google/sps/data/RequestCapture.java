@@ -0,0 +1,105 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Holds the most recently captured requests in a fixed-size ring buffer, so capturing can be left
+ * on without memory growing with traffic. Captures can be downloaded as a binary log and read back
+ * by {@link RequestReplayer}.
+ */
+public final class RequestCapture {
+
+  /** The number of requests kept; older requests are overwritten. */
+  public static final int CAPACITY = 512;
+
+  /** The most body bytes recorded per request, which bounds the buffer at 32 MB. */
+  public static final int MAX_BODY_BYTES = 64 * 1024;
+
+  private static final RequestCapture INSTANCE = new RequestCapture();
+
+  private final CapturedRequest[] buffer = new CapturedRequest[CAPACITY];
+  private long totalCaptured;
+  private volatile boolean enabled;
+
+  private RequestCapture() {}
+
+  public static RequestCapture getInstance() {
+    return INSTANCE;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public synchronized void add(CapturedRequest request) {
+    buffer[(int) (totalCaptured % CAPACITY)] = request;
+    totalCaptured++;
+  }
+
+  /** Returns the number of requests captured since the buffer was last cleared. */
+  public synchronized long getTotalCaptured() {
+    return totalCaptured;
+  }
+
+  /** Returns the requests still in the buffer, oldest first. */
+  public synchronized List<CapturedRequest> getRequests() {
+    int size = (int) Math.min(totalCaptured, CAPACITY);
+    List<CapturedRequest> requests = new ArrayList<>(size);
+    for (long i = totalCaptured - size; i < totalCaptured; i++) {
+      requests.add(buffer[(int) (i % CAPACITY)]);
+    }
+    return requests;
+  }
+
+  public synchronized void clear() {
+    Arrays.fill(buffer, null);
+    totalCaptured = 0;
+  }
+
+  /** Writes the given requests as a capture log. */
+  public static void writeLog(List<CapturedRequest> requests, OutputStream out) throws IOException {
+    DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(out));
+    for (CapturedRequest request : requests) {
+      request.writeTo(dataOut);
+    }
+    dataOut.flush();
+  }
+
+  /** Reads every request from a capture log. */
+  public static List<CapturedRequest> readLog(InputStream in) throws IOException {
+    DataInputStream dataIn = new DataInputStream(new BufferedInputStream(in));
+    List<CapturedRequest> requests = new ArrayList<>();
+    CapturedRequest request;
+    while ((request = CapturedRequest.readFrom(dataIn)) != null) {
+      requests.add(request);
+    }
+    return requests;
+  }
+}
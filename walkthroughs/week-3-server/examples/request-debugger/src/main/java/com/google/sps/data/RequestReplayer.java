@@ -0,0 +1,229 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends captured requests to a server again. Requests are started on a schedule, either at a fixed
+ * rate or with the spacing they were captured with, and at most {@code concurrency} are in flight
+ * at once. Latencies are measured from each request's scheduled start, so a server that falls
+ * behind shows up as queueing time instead of being hidden by a slower send rate.
+ *
+ * <p>Run it from the command line against a capture log downloaded from /capture:
+ *
+ * <pre>
+ * java -cp target/classes com.google.sps.data.RequestReplayer \
+ *     capture.log http://localhost:8080 8 50
+ * </pre>
+ */
+public final class RequestReplayer {
+
+  /** Headers that describe the original connection rather than the request. */
+  private static final List<String> SKIPPED_HEADERS =
+      Arrays.asList("host", "content-length", "connection", "transfer-encoding", "keep-alive");
+
+  private final String baseUrl;
+  private final int concurrency;
+  private final double requestsPerSecond;
+
+  /**
+   * @param baseUrl the scheme, host and port to send requests to, such as http://localhost:8080
+   * @param concurrency the most requests in flight at once
+   * @param requestsPerSecond the rate to start requests at, or 0 to keep the captured spacing
+   */
+  public RequestReplayer(String baseUrl, int concurrency, double requestsPerSecond) {
+    if (concurrency < 1) {
+      throw new IllegalArgumentException("Concurrency must be positive: " + concurrency);
+    }
+    if (requestsPerSecond < 0) {
+      throw new IllegalArgumentException("Rate must not be negative: " + requestsPerSecond);
+    }
+    this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    this.concurrency = concurrency;
+    this.requestsPerSecond = requestsPerSecond;
+  }
+
+  /** The outcome of a replay. */
+  public static final class Result {
+    private final long[] latenciesNanos;
+    private final Map<Integer, Integer> statusCounts = new TreeMap<>();
+    private int count;
+    private int errors;
+    private long elapsedNanos;
+
+    private Result(int size) {
+      latenciesNanos = new long[size];
+    }
+
+    private synchronized void record(int status, long latencyNanos) {
+      latenciesNanos[count++] = latencyNanos;
+      if (status < 0) {
+        errors++;
+      } else {
+        statusCounts.merge(status, 1, Integer::sum);
+      }
+    }
+
+    /** Returns the latency in milliseconds below which the given percentage of requests fell. */
+    public synchronized double getPercentileMillis(double percentile) {
+      if (count == 0) {
+        return 0;
+      }
+      long[] sorted = Arrays.copyOf(latenciesNanos, count);
+      Arrays.sort(sorted);
+      int index = (int) Math.ceil(percentile / 100 * count) - 1;
+      return sorted[Math.max(0, Math.min(count - 1, index))] / 1e6;
+    }
+
+    @Override
+    public synchronized String toString() {
+      double seconds = elapsedNanos / 1e9;
+      return String.format(
+          Locale.ROOT,
+          "%d requests in %.1f s (%.1f/s), %d errors, statuses %s%n"
+              + "latency ms: p50 %.1f, p90 %.1f, p99 %.1f, max %.1f",
+          count,
+          seconds,
+          seconds == 0 ? 0 : count / seconds,
+          errors,
+          statusCounts,
+          getPercentileMillis(50),
+          getPercentileMillis(90),
+          getPercentileMillis(99),
+          getPercentileMillis(100));
+    }
+  }
+
+  /** Sends every request and waits for the responses. */
+  public Result replay(List<CapturedRequest> requests) throws InterruptedException {
+    Result result = new Result(requests.size());
+    if (requests.isEmpty()) {
+      return result;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+    Semaphore inFlight = new Semaphore(concurrency);
+    long firstCaptured = requests.get(0).getNanoTime();
+    long start = System.nanoTime();
+    try {
+      for (int i = 0; i < requests.size(); i++) {
+        CapturedRequest request = requests.get(i);
+        long offset =
+            requestsPerSecond > 0
+                ? (long) (i * 1e9 / requestsPerSecond)
+                : request.getNanoTime() - firstCaptured;
+        long scheduled = start + offset;
+        long delay = scheduled - System.nanoTime();
+        if (delay > 0) {
+          TimeUnit.NANOSECONDS.sleep(delay);
+        }
+
+        inFlight.acquire();
+        executor.execute(
+            () -> {
+              try {
+                int status = send(request);
+                result.record(status, System.nanoTime() - scheduled);
+              } finally {
+                inFlight.release();
+              }
+            });
+      }
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+    synchronized (result) {
+      result.elapsedNanos = System.nanoTime() - start;
+    }
+    return result;
+  }
+
+  /** Sends a single request and returns its status code, or -1 if it could not be sent. */
+  private int send(CapturedRequest request) {
+    HttpURLConnection connection = null;
+    try {
+      URL url = new URL(baseUrl + request.getPathAndQuery());
+      connection = (HttpURLConnection) url.openConnection();
+      connection.setRequestMethod(request.getMethod());
+      connection.setInstanceFollowRedirects(false);
+      for (String[] header : request.getHeaders()) {
+        if (!SKIPPED_HEADERS.contains(header[0].toLowerCase(Locale.ROOT))) {
+          connection.addRequestProperty(header[0], header[1]);
+        }
+      }
+
+      byte[] body = request.getBody();
+      if (body.length > 0) {
+        // Captured bodies are small, so let the connection buffer the body and send it in the
+        // same packet as the headers instead of streaming it and waiting on a delayed ACK.
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+          out.write(body);
+        }
+      }
+
+      int status = connection.getResponseCode();
+      InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+      if (in != null) {
+        // Drain the response so the connection can be reused for the next request.
+        try (InputStream responseBody = in) {
+          byte[] buffer = new byte[8192];
+          while (responseBody.read(buffer) != -1) {}
+        }
+      }
+      return status;
+    } catch (IOException e) {
+      System.err.println("Could not replay " + request.getPathAndQuery() + ": " + e);
+      if (connection != null) {
+        connection.disconnect();
+      }
+      return -1;
+    }
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length < 2) {
+      System.err.println(
+          "Usage: RequestReplayer <capture-log> <base-url> [concurrency] [requests-per-second]");
+      System.exit(1);
+    }
+
+    List<CapturedRequest> requests;
+    try (InputStream in = new FileInputStream(args[0])) {
+      requests = RequestCapture.readLog(in);
+    }
+    int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+    double requestsPerSecond = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+
+    RequestReplayer replayer = new RequestReplayer(args[1], concurrency, requestsPerSecond);
+    System.out.println(replayer.replay(requests));
+  }
+}
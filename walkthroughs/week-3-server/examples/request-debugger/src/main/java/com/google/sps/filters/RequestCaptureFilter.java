@@ -0,0 +1,193 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.filters;
+
+import com.google.sps.data.CapturedRequest;
+import com.google.sps.data.RequestCapture;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+/**
+ * Filter that records requests into {@link RequestCapture} while capturing is turned on. Requests
+ * to the capture page itself are never recorded, and neither are headers that carry credentials.
+ */
+@WebFilter("/*")
+public final class RequestCaptureFilter implements Filter {
+
+  /**
+   * Headers that would let anyone holding a capture log act as the user who sent the request. They
+   * are left out rather than masked so a replay doesn't send a bogus session.
+   */
+  private static final List<String> CREDENTIAL_HEADERS =
+      Arrays.asList("authorization", "cookie", "proxy-authorization");
+
+  private final RequestCapture capture = RequestCapture.getInstance();
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    if (!capture.isEnabled()
+        || !(request instanceof HttpServletRequest)
+        || ((HttpServletRequest) request).getRequestURI().startsWith("/capture")) {
+      chain.doFilter(request, response);
+      return;
+    }
+
+    HttpServletRequest httpRequest = (HttpServletRequest) request;
+    long nanoTime = System.nanoTime();
+    String method = httpRequest.getMethod();
+    String uri = httpRequest.getRequestURI();
+    String queryString = httpRequest.getQueryString();
+    String contentType = httpRequest.getContentType();
+    List<String[]> headers = getHeaders(httpRequest);
+
+    if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+      // Reading the parameters consumes the body, so record them as a re-encoded body instead.
+      byte[] body = encodeParameters(httpRequest.getParameterMap());
+      capture.add(new CapturedRequest(nanoTime, method, uri, null, headers, body, false));
+      chain.doFilter(request, response);
+    } else if (contentType != null && contentType.startsWith("multipart/")) {
+      // Uploads are left for the container to parse, so only the request line and headers are kept.
+      capture.add(
+          new CapturedRequest(nanoTime, method, uri, queryString, headers, new byte[0], true));
+      chain.doFilter(request, response);
+    } else {
+      InputStream in = httpRequest.getInputStream();
+      ByteArrayOutputStream head = new ByteArrayOutputStream();
+      byte[] chunk = new byte[8192];
+      int read;
+      while (head.size() <= RequestCapture.MAX_BODY_BYTES
+          && (read = in.read(chunk, 0, chunk.length)) != -1) {
+        head.write(chunk, 0, read);
+      }
+      byte[] buffered = head.toByteArray();
+      boolean truncated = buffered.length > RequestCapture.MAX_BODY_BYTES;
+      byte[] body = truncated ? Arrays.copyOf(buffered, RequestCapture.MAX_BODY_BYTES) : buffered;
+      capture.add(
+          new CapturedRequest(nanoTime, method, uri, queryString, headers, body, truncated));
+      // The servlet still sees the whole body: the buffered bytes followed by the unread rest.
+      chain.doFilter(new BufferedBodyRequest(httpRequest, buffered, in), response);
+    }
+  }
+
+  private static List<String[]> getHeaders(HttpServletRequest request) {
+    List<String[]> headers = new ArrayList<>();
+    Enumeration<String> headerNames = request.getHeaderNames();
+    while (headerNames.hasMoreElements()) {
+      String headerName = headerNames.nextElement();
+      if (CREDENTIAL_HEADERS.contains(headerName.toLowerCase(Locale.ROOT))) {
+        continue;
+      }
+      Enumeration<String> values = request.getHeaders(headerName);
+      while (values.hasMoreElements()) {
+        headers.add(new String[] {headerName, values.nextElement()});
+      }
+    }
+    return headers;
+  }
+
+  private static byte[] encodeParameters(Map<String, String[]> parameters) throws IOException {
+    StringBuilder body = new StringBuilder();
+    for (Map.Entry<String, String[]> parameter : parameters.entrySet()) {
+      for (String value : parameter.getValue()) {
+        if (body.length() > 0) {
+          body.append('&');
+        }
+        body.append(URLEncoder.encode(parameter.getKey(), "UTF-8"))
+            .append('=')
+            .append(URLEncoder.encode(value, "UTF-8"));
+      }
+    }
+    return body.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /** A request whose body is replayed from bytes the filter already read. */
+  private static final class BufferedBodyRequest extends HttpServletRequestWrapper {
+    private final ServletInputStream inputStream;
+
+    BufferedBodyRequest(HttpServletRequest request, byte[] buffered, InputStream rest) {
+      super(request);
+      InputStream body = new SequenceInputStream(new ByteArrayInputStream(buffered), rest);
+      this.inputStream =
+          new ServletInputStream() {
+            private boolean finished;
+
+            @Override
+            public int read() throws IOException {
+              int b = body.read();
+              finished = b == -1;
+              return b;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+              int read = body.read(bytes, offset, length);
+              finished = read == -1;
+              return read;
+            }
+
+            @Override
+            public boolean isFinished() {
+              return finished;
+            }
+
+            @Override
+            public boolean isReady() {
+              return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+              throw new IllegalStateException("Non-blocking reads are not supported");
+            }
+          };
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+      return inputStream;
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+      String encoding = getCharacterEncoding();
+      return new BufferedReader(
+          new InputStreamReader(inputStream, encoding == null ? "ISO-8859-1" : encoding));
+    }
+  }
+}
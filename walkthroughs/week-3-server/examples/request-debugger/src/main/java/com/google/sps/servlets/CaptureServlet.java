@@ -0,0 +1,91 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.data.CapturedRequest;
+import com.google.sps.data.RequestCapture;
+import java.io.IOException;
+import java.util.List;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet that controls request capture. GET shows the captured requests, or downloads them as a
+ * binary log for {@link com.google.sps.data.RequestReplayer} with ?format=log. POST with an action
+ * of start, stop or clear changes the capture state.
+ */
+@WebServlet("/capture")
+public final class CaptureServlet extends HttpServlet {
+
+  private final RequestCapture capture = RequestCapture.getInstance();
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    List<CapturedRequest> requests = capture.getRequests();
+    if ("log".equals(request.getParameter("format"))) {
+      response.setContentType("application/octet-stream");
+      response.setHeader("Content-Disposition", "attachment; filename=\"capture.log\"");
+      RequestCapture.writeLog(requests, response.getOutputStream());
+      return;
+    }
+
+    StringBuilder html = new StringBuilder(1024);
+    html.append("<h1>Request Capture</h1>\n");
+    html.append("<p>Capturing is ").append(capture.isEnabled() ? "on" : "off").append(". ");
+    html.append(capture.getTotalCaptured()).append(" requests captured, the last ");
+    html.append(requests.size()).append(" kept.</p>\n");
+    html.append("<form method=\"POST\" action=\"/capture\">");
+    html.append("<button name=\"action\" value=\"start\">Start</button> ");
+    html.append("<button name=\"action\" value=\"stop\">Stop</button> ");
+    html.append("<button name=\"action\" value=\"clear\">Clear</button>");
+    html.append("</form>\n");
+    html.append("<p><a href=\"/capture?format=log\">Download capture log</a></p>\n");
+
+    html.append("<ol>");
+    for (CapturedRequest captured : requests) {
+      html.append("<li>").append(captured.getMethod()).append(' ');
+      RequestDebuggerServlet.escapeHtml(html, captured.getPathAndQuery());
+      html.append(" (").append(captured.getBody().length).append(" body bytes");
+      if (captured.isBodyTruncated()) {
+        html.append(", truncated");
+      }
+      html.append(")</li>");
+    }
+    html.append("</ol>\n");
+
+    response.setContentType("text/html;");
+    response.getWriter().print(html);
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String action = request.getParameter("action");
+    if ("start".equals(action)) {
+      capture.setEnabled(true);
+    } else if ("stop".equals(action)) {
+      capture.setEnabled(false);
+    } else if ("clear".equals(action)) {
+      capture.clear();
+    } else {
+      response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+      response.setContentType("text/plain");
+      response.getWriter().println("Please choose an action of start, stop or clear.");
+      return;
+    }
+    response.sendRedirect("/capture");
+  }
+}
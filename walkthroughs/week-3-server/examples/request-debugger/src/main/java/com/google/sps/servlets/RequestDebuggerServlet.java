@@ -15,7 +15,6 @@
 package com.google.sps.servlets;
 
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.Enumeration;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -32,56 +31,79 @@ public final class RequestDebuggerServlet extends HttpServlet {
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
     response.setContentType("text/html;");
-    printRequest(response.getWriter(), request);
+    response.getWriter().print(printRequest(request));
   }
 
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
     response.setContentType("text/html;");
-    printRequest(response.getWriter(), request);
+    response.getWriter().print(printRequest(request));
   }
 
-  private void printRequest(PrintWriter out, HttpServletRequest request) {
-    out.println("request URL: " + request.getRequestURL());
-    out.println("<br/>");
+  /** Builds the whole page in one buffer so the response is written with a single call. */
+  private String printRequest(HttpServletRequest request) {
+    StringBuilder html = new StringBuilder(1024);
+    appendLine(html, "request URL", request.getRequestURL());
+    appendLine(html, "request URI", request.getRequestURI());
+    appendLine(html, "content length", request.getContentLength());
+    appendLine(html, "content type", request.getContentType());
+    appendLine(html, "protocol", request.getProtocol());
+    appendLine(html, "client IP", request.getRemoteAddr());
+    appendLine(html, "server name", request.getServerName());
+    appendLine(html, "character encoding", request.getCharacterEncoding());
 
-    out.println("request URI: " + request.getRequestURI());
-    out.println("<br/>");
-
-    out.println("content length: " + request.getContentLength());
-    out.println("<br/>");
-
-    out.println("content type: " + request.getContentType());
-    out.println("<br/>");
-
-    out.println("protocol: " + request.getProtocol());
-    out.println("<br/>");
-
-    out.println("client IP: " + request.getRemoteAddr());
-    out.println("<br/>");
-
-    out.println("server name: " + request.getServerName());
-    out.println("<br/>");
-
-    out.println("character encoding: " + request.getCharacterEncoding());
-    out.println("<br/>");
-
-    out.println("headers:");
-    out.println("<ul>");
+    html.append("headers:\n<ul>");
     Enumeration<String> headerNames = request.getHeaderNames();
     while (headerNames.hasMoreElements()) {
       String headerName = headerNames.nextElement();
-      out.print("<li>" + headerName + ": " + request.getHeader(headerName) + "</li>");
+      appendItem(html, headerName, request.getHeader(headerName));
     }
-    out.println("</ul>");
+    html.append("</ul>\n");
 
-    out.println("parameters:");
-    out.println("<ul>");
+    html.append("parameters:\n<ul>");
     Enumeration<String> parameterNames = request.getParameterNames();
     while (parameterNames.hasMoreElements()) {
       String parameterName = parameterNames.nextElement();
-      out.print("<li>" + parameterName + ": " + request.getParameter(parameterName) + "</li>");
+      appendItem(html, parameterName, request.getParameter(parameterName));
+    }
+    html.append("</ul>\n");
+    return html.toString();
+  }
+
+  private static void appendLine(StringBuilder html, String label, Object value) {
+    html.append(label).append(": ");
+    escapeHtml(html, String.valueOf(value));
+    html.append("\n<br/>\n");
+  }
+
+  private static void appendItem(StringBuilder html, String name, String value) {
+    html.append("<li>");
+    escapeHtml(html, name);
+    html.append(": ");
+    escapeHtml(html, value);
+    html.append("</li>");
+  }
+
+  /** Appends text to the page so that request values cannot inject markup. */
+  static void escapeHtml(StringBuilder html, String text) {
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      switch (c) {
+        case '<':
+          html.append("&lt;");
+          break;
+        case '>':
+          html.append("&gt;");
+          break;
+        case '&':
+          html.append("&amp;");
+          break;
+        case '"':
+          html.append("&quot;");
+          break;
+        default:
+          html.append(c);
+      }
     }
-    out.println("</ul>");
   }
 }
@@ -0,0 +1,47 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.List;
+
+/**
+ * The hottest methods and allocation sites of a profiling recording.
+ *
+ * <p>Note: The private variables in this class are converted into JSON.
+ */
+public final class ProfileSummary {
+
+  /** Methods most often on top of the stack, by number of execution samples. */
+  private final List<Hotspot> hotMethods;
+
+  /** Allocation sites by estimated bytes allocated. */
+  private final List<Hotspot> allocationSites;
+
+  public ProfileSummary(List<Hotspot> hotMethods, List<Hotspot> allocationSites) {
+    this.hotMethods = hotMethods;
+    this.allocationSites = allocationSites;
+  }
+
+  /** A code location and how much it was seen in the recording. */
+  public static final class Hotspot {
+    private final String location;
+    private final long weight;
+
+    public Hotspot(String location, long weight) {
+      this.location = location;
+      this.weight = weight;
+    }
+  }
+}
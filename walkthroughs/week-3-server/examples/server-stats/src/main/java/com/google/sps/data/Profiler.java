@@ -0,0 +1,195 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Runs one JDK Flight Recorder session at a time, using the built-in jdk.jfr API, and summarizes
+ * the hottest methods and allocation sites of the last finished recording.
+ */
+public final class Profiler {
+
+  private static final int SUMMARY_SIZE = 20;
+  private static final Set<String> ALLOWED_SETTINGS =
+      new HashSet<>(Arrays.asList("default", "profile"));
+
+  private Recording recording;
+  private Path recordingFile;
+  private ProfileSummary summary;
+
+  /**
+   * Starts a recording that stops by itself after `duration`. `settings` is one of the JDK's JFR
+   * configurations, "default" (low overhead) or "profile" (more detail).
+   *
+   * @throws IllegalStateException if a recording is already running
+   * @throws IllegalArgumentException if `settings` is not one of those configurations
+   */
+  public synchronized void start(Duration duration, String settings) throws IOException {
+    if (isRecording()) {
+      throw new IllegalStateException("A recording is already running.");
+    }
+    if (!ALLOWED_SETTINGS.contains(settings)) {
+      throw new IllegalArgumentException("Unknown recording settings: " + settings);
+    }
+    Configuration configuration;
+    try {
+      configuration = Configuration.getConfiguration(settings);
+    } catch (ParseException | IOException e) {
+      throw new IllegalArgumentException("Unknown recording settings: " + settings);
+    }
+    discardRecording();
+
+    recordingFile = Files.createTempFile("server-profile", ".jfr");
+    recording = new Recording(configuration);
+    recording.setName("server-stats");
+    // Both configurations dump the process environment and system properties, which hold the
+    // app's credentials. The summary doesn't need them, so keep them out of the file.
+    recording.disable("jdk.InitialEnvironmentVariable");
+    recording.disable("jdk.InitialSystemProperty");
+    recording.setDuration(duration);
+    recording.setDestination(recordingFile);
+    recording.start();
+  }
+
+  /** Stops the running recording early. Does nothing if no recording is running. */
+  public synchronized void stop() {
+    if (isRecording()) {
+      recording.stop();
+    }
+  }
+
+  /** Returns whether a recording is running or waiting to start. */
+  public synchronized boolean isRecording() {
+    return recording != null
+        && (recording.getState() == RecordingState.RUNNING
+            || recording.getState() == RecordingState.DELAYED);
+  }
+
+  /** Returns the file of the last finished recording, or null if there is none. */
+  public synchronized Path getRecordingFile() {
+    if (recording == null || isRecording()) {
+      return null;
+    }
+    return recordingFile;
+  }
+
+  /** Returns the hotspots of the last finished recording, or null if there is none. */
+  public synchronized ProfileSummary getSummary() throws IOException {
+    Path file = getRecordingFile();
+    if (file == null) {
+      return null;
+    }
+    if (summary == null) {
+      summary = summarize(file);
+    }
+    return summary;
+  }
+
+  /** Stops any recording and deletes its file. */
+  public synchronized void close() throws IOException {
+    discardRecording();
+  }
+
+  private void discardRecording() throws IOException {
+    if (recording != null) {
+      recording.close();
+      recording = null;
+    }
+    if (recordingFile != null) {
+      Files.deleteIfExists(recordingFile);
+      recordingFile = null;
+    }
+    summary = null;
+  }
+
+  private static ProfileSummary summarize(Path file) throws IOException {
+    Map<String, Long> methodSamples = new HashMap<>();
+    Map<String, Long> allocatedBytes = new HashMap<>();
+    // Read one event at a time; a long recording can be far larger than the heap can spare.
+    try (RecordingFile recording = new RecordingFile(file)) {
+      while (recording.hasMoreEvents()) {
+        addEvent(recording.readEvent(), methodSamples, allocatedBytes);
+      }
+    }
+    return new ProfileSummary(top(methodSamples), top(allocatedBytes));
+  }
+
+  private static void addEvent(
+      RecordedEvent event, Map<String, Long> methodSamples, Map<String, Long> allocatedBytes) {
+    String eventName = event.getEventType().getName();
+    if (eventName.equals("jdk.ExecutionSample")) {
+      String method = topFrame(event.getStackTrace());
+      if (method != null) {
+        methodSamples.merge(method, 1L, Long::sum);
+      }
+    } else if (eventName.equals("jdk.ObjectAllocationInNewTLAB")
+        || eventName.equals("jdk.ObjectAllocationOutsideTLAB")) {
+      String site = topFrame(event.getStackTrace());
+      if (site != null) {
+        String allocation = event.getClass("objectClass").getName() + " at " + site;
+        // TLAB events are sampled, so the TLAB size stands in for the bytes allocated there.
+        long bytes = event.hasField("tlabSize")
+            ? event.getLong("tlabSize") : event.getLong("allocationSize");
+        allocatedBytes.merge(allocation, bytes, Long::sum);
+      }
+    } else if (eventName.equals("jdk.ObjectAllocationSample")) {
+      // Newer JDKs replace the TLAB events with this throttled, pre-weighted sample.
+      String site = topFrame(event.getStackTrace());
+      if (site != null) {
+        String allocation = event.getClass("objectClass").getName() + " at " + site;
+        allocatedBytes.merge(allocation, event.getLong("weight"), Long::sum);
+      }
+    }
+  }
+
+  private static String topFrame(RecordedStackTrace stackTrace) {
+    if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+      return null;
+    }
+    RecordedFrame frame = stackTrace.getFrames().get(0);
+    return frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+        + ":" + frame.getLineNumber();
+  }
+
+  private static List<ProfileSummary.Hotspot> top(Map<String, Long> counts) {
+    List<Map.Entry<String, Long>> entries = new ArrayList<>(counts.entrySet());
+    Collections.sort(entries, (a, b) -> Long.compare(b.getValue(), a.getValue()));
+    List<ProfileSummary.Hotspot> hotspots = new ArrayList<>();
+    for (Map.Entry<String, Long> entry : entries.subList(0, Math.min(SUMMARY_SIZE, entries.size()))) {
+      hotspots.add(new ProfileSummary.Hotspot(entry.getKey(), entry.getValue()));
+    }
+    return hotspots;
+  }
+}
@@ -0,0 +1,180 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request counts and latency histograms recorded by the metrics filter. Recording only updates
+ * atomic counters, so it never blocks a request thread.
+ *
+ * <p>Latencies are bucketed on a log scale with four buckets per doubling, starting at 100
+ * microseconds, so percentiles are accurate to within about 20%.
+ */
+public final class RequestMetrics {
+
+  /** Upper bound of each latency bucket in microseconds. The last bucket has no upper bound. */
+  private static final long[] BUCKET_BOUNDS_MICROS = new long[64];
+
+  static {
+    for (int i = 0; i < BUCKET_BOUNDS_MICROS.length; i++) {
+      BUCKET_BOUNDS_MICROS[i] = Math.round(100 * Math.pow(2, i / 4.0));
+    }
+  }
+
+  private static final long WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  private static final RequestMetrics INSTANCE = new RequestMetrics();
+
+  /** Returns the metrics shared by the filter that records requests and the stats servlet. */
+  public static RequestMetrics getInstance() {
+    return INSTANCE;
+  }
+
+  /** Every request since the server started. */
+  private final Histogram total = new Histogram(System.currentTimeMillis());
+
+  /** Requests in the current one-minute window, and in the window before it. */
+  private final AtomicReference<Histogram> currentWindow = new AtomicReference<>(new Histogram(total.startMillis));
+  private volatile Histogram previousWindow;
+
+  private RequestMetrics() {}
+
+  /** Records a request that took `latencyNanos` to serve. */
+  public void record(long latencyNanos) {
+    int bucket = bucketFor(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+    total.record(bucket, latencyNanos);
+    currentWindow().record(bucket, latencyNanos);
+  }
+
+  /** Returns the totals since the server started, for counters that only ever increase. */
+  public Histogram getTotal() {
+    return total;
+  }
+
+  /**
+   * Returns the last complete one-minute window, or the current partial window if the server has
+   * not been up for a minute yet.
+   */
+  public Histogram getRecentWindow() {
+    Histogram current = currentWindow();
+    Histogram previous = previousWindow;
+    return previous == null ? current : previous;
+  }
+
+  private Histogram currentWindow() {
+    long now = System.currentTimeMillis();
+    Histogram current = currentWindow.get();
+    while (now - current.startMillis >= WINDOW_MILLIS) {
+      Histogram next = new Histogram(current.startMillis + WINDOW_MILLIS);
+      if (currentWindow.compareAndSet(current, next)) {
+        current.endMillis = next.startMillis;
+        previousWindow = current;
+      }
+      current = currentWindow.get();
+    }
+    return current;
+  }
+
+  private static int bucketFor(long latencyMicros) {
+    // Buckets are few enough that a binary search would not be noticeably faster.
+    for (int i = 0; i < BUCKET_BOUNDS_MICROS.length - 1; i++) {
+      if (latencyMicros <= BUCKET_BOUNDS_MICROS[i]) {
+        return i;
+      }
+    }
+    return BUCKET_BOUNDS_MICROS.length - 1;
+  }
+
+  /** Returns the number of latency buckets. */
+  public static int getBucketCount() {
+    return BUCKET_BOUNDS_MICROS.length;
+  }
+
+  /** Returns the upper bound of `bucket` in seconds, or infinity for the last bucket. */
+  public static double getBucketBoundSeconds(int bucket) {
+    if (bucket == BUCKET_BOUNDS_MICROS.length - 1) {
+      return Double.POSITIVE_INFINITY;
+    }
+    return BUCKET_BOUNDS_MICROS[bucket] / 1e6;
+  }
+
+  /** Request count and latency distribution over a period of time. */
+  public static final class Histogram {
+    private final long startMillis;
+    private volatile long endMillis = -1;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder latencySumNanos = new LongAdder();
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS_MICROS.length);
+
+    private Histogram(long startMillis) {
+      this.startMillis = startMillis;
+    }
+
+    private void record(int bucket, long latencyNanos) {
+      count.increment();
+      latencySumNanos.add(latencyNanos);
+      buckets.incrementAndGet(bucket);
+    }
+
+    public long getCount() {
+      return count.sum();
+    }
+
+    public double getLatencySumSeconds() {
+      return latencySumNanos.sum() / 1e9;
+    }
+
+    /** Returns the number of requests that fell into `bucket`. */
+    public long getBucketCount(int bucket) {
+      return buckets.get(bucket);
+    }
+
+    /** Returns the average number of requests per second over this period. */
+    public double getRequestsPerSecond() {
+      long end = endMillis == -1 ? System.currentTimeMillis() : endMillis;
+      double seconds = Math.max(1, end - startMillis) / 1000.0;
+      return getCount() / seconds;
+    }
+
+    /**
+     * Returns the upper bound in milliseconds of the bucket containing the given percentile
+     * (between 0 and 100), or 0 if no requests were recorded.
+     */
+    public double getLatencyPercentileMillis(double percentile) {
+      long count = 0;
+      long[] snapshot = new long[buckets.length()];
+      for (int i = 0; i < snapshot.length; i++) {
+        snapshot[i] = buckets.get(i);
+        count += snapshot[i];
+      }
+      if (count == 0) {
+        return 0;
+      }
+      long rank = (long) Math.ceil(percentile / 100 * count);
+      long seen = 0;
+      for (int i = 0; i < snapshot.length - 1; i++) {
+        seen += snapshot[i];
+        if (seen >= rank) {
+          return BUCKET_BOUNDS_MICROS[i] / 1000.0;
+        }
+      }
+      return BUCKET_BOUNDS_MICROS[snapshot.length - 1] / 1000.0;
+    }
+  }
+}
@@ -15,6 +15,7 @@
 package com.google.sps.data;
 
 import java.util.Date;
+import java.util.List;
 
 /** Class containing server statistics. */
 public final class ServerStats {
@@ -23,12 +24,31 @@ public final class ServerStats {
   private final Date currentTime;
   private final long maxMemory;
   private final long usedMemory;
+  private final int threadCount;
+  private final int daemonThreadCount;
+  private final int peakThreadCount;
+  private final double processCpuLoad;
+  private final double systemLoadAverage;
+  private final List<GarbageCollector> garbageCollectors;
+  private final List<MemoryPool> memoryPools;
+  private final Requests requests;
 
-  public ServerStats(Date startTime, Date currentTime, long maxMemory, long usedMemory) {
+  public ServerStats(Date startTime, Date currentTime, long maxMemory, long usedMemory,
+      int threadCount, int daemonThreadCount, int peakThreadCount, double processCpuLoad,
+      double systemLoadAverage, List<GarbageCollector> garbageCollectors,
+      List<MemoryPool> memoryPools, Requests requests) {
     this.startTime = startTime;
     this.currentTime = currentTime;
     this.maxMemory = maxMemory;
     this.usedMemory = usedMemory;
+    this.threadCount = threadCount;
+    this.daemonThreadCount = daemonThreadCount;
+    this.peakThreadCount = peakThreadCount;
+    this.processCpuLoad = processCpuLoad;
+    this.systemLoadAverage = systemLoadAverage;
+    this.garbageCollectors = garbageCollectors;
+    this.memoryPools = memoryPools;
+    this.requests = requests;
   }
 
   public Date getStartTime() {
@@ -46,4 +66,138 @@ public final class ServerStats {
   public long getUsedMemory() {
     return usedMemory;
   }
+
+  public int getThreadCount() {
+    return threadCount;
+  }
+
+  public int getDaemonThreadCount() {
+    return daemonThreadCount;
+  }
+
+  public int getPeakThreadCount() {
+    return peakThreadCount;
+  }
+
+  /** Returns the CPU used by this process between 0 and 1, or a negative value if unavailable. */
+  public double getProcessCpuLoad() {
+    return processCpuLoad;
+  }
+
+  /** Returns the system load average over the last minute, or a negative value if unavailable. */
+  public double getSystemLoadAverage() {
+    return systemLoadAverage;
+  }
+
+  public List<GarbageCollector> getGarbageCollectors() {
+    return garbageCollectors;
+  }
+
+  public List<MemoryPool> getMemoryPools() {
+    return memoryPools;
+  }
+
+  public Requests getRequests() {
+    return requests;
+  }
+
+  /** How often a garbage collector has run and how long it has paused in total. */
+  public static final class GarbageCollector {
+    private final String name;
+    private final long collectionCount;
+    private final long collectionTimeMillis;
+
+    public GarbageCollector(String name, long collectionCount, long collectionTimeMillis) {
+      this.name = name;
+      this.collectionCount = collectionCount;
+      this.collectionTimeMillis = collectionTimeMillis;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getCollectionCount() {
+      return collectionCount;
+    }
+
+    public long getCollectionTimeMillis() {
+      return collectionTimeMillis;
+    }
+  }
+
+  /** Memory usage of one heap or non-heap memory pool, in bytes. Max is -1 if undefined. */
+  public static final class MemoryPool {
+    private final String name;
+    private final boolean heap;
+    private final long used;
+    private final long committed;
+    private final long max;
+
+    public MemoryPool(String name, boolean heap, long used, long committed, long max) {
+      this.name = name;
+      this.heap = heap;
+      this.used = used;
+      this.committed = committed;
+      this.max = max;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public boolean isHeap() {
+      return heap;
+    }
+
+    public long getUsed() {
+      return used;
+    }
+
+    public long getCommitted() {
+      return committed;
+    }
+
+    public long getMax() {
+      return max;
+    }
+  }
+
+  /** Request rate and latency percentiles over the most recent minute. */
+  public static final class Requests {
+    private final long count;
+    private final double requestsPerSecond;
+    private final double latencyP50Millis;
+    private final double latencyP90Millis;
+    private final double latencyP99Millis;
+
+    public Requests(long count, double requestsPerSecond, double latencyP50Millis,
+        double latencyP90Millis, double latencyP99Millis) {
+      this.count = count;
+      this.requestsPerSecond = requestsPerSecond;
+      this.latencyP50Millis = latencyP50Millis;
+      this.latencyP90Millis = latencyP90Millis;
+      this.latencyP99Millis = latencyP99Millis;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public double getRequestsPerSecond() {
+      return requestsPerSecond;
+    }
+
+    public double getLatencyP50Millis() {
+      return latencyP50Millis;
+    }
+
+    public double getLatencyP90Millis() {
+      return latencyP90Millis;
+    }
+
+    public double getLatencyP99Millis() {
+      return latencyP99Millis;
+    }
+  }
 }
@@ -0,0 +1,183 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.Gson;
+import com.google.sps.data.ProfileSummary;
+import com.google.sps.data.Profiler;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet that controls JDK Flight Recorder sessions, so latency spikes can be investigated on a
+ * running server without an external agent.
+ *
+ * <ul>
+ *   <li>POST with `action=start`, and optionally `seconds` and `settings`, starts a recording.
+ *   <li>POST with `action=stop` stops it early.
+ *   <li>GET returns the recording status, `?view=summary` the hottest methods and allocation
+ *       sites, and `?view=download` the .jfr file.
+ * </ul>
+ *
+ * <p>WEB-INF/web.xml limits this servlet to the project's admins. Runtimes without Flight Recorder,
+ * such as Java 8 before 8u272, get 501 Not Implemented.
+ */
+@WebServlet("/profiling")
+public final class ProfilingServlet extends HttpServlet {
+
+  private static final int DEFAULT_SECONDS = 30;
+  private static final int MAX_SECONDS = 300;
+  private static final String DEFAULT_SETTINGS = "profile";
+
+  /** Null when this runtime has no Flight Recorder. */
+  private final Profiler profiler = isFlightRecorderAvailable() ? new Profiler() : null;
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    if (profiler == null) {
+      sendUnavailable(response);
+      return;
+    }
+    String view = request.getParameter("view");
+    if ("download".equals(view)) {
+      Path file = profiler.getRecordingFile();
+      if (file == null) {
+        sendMessage(response, HttpServletResponse.SC_NOT_FOUND, "No finished recording.");
+        return;
+      }
+      response.setContentType("application/octet-stream");
+      response.setHeader("Content-Disposition", "attachment; filename=\"server-profile.jfr\"");
+      response.setContentLengthLong(Files.size(file));
+      Files.copy(file, response.getOutputStream());
+    } else if ("summary".equals(view)) {
+      ProfileSummary summary = profiler.getSummary();
+      if (summary == null) {
+        sendMessage(response, HttpServletResponse.SC_NOT_FOUND, "No finished recording.");
+        return;
+      }
+      response.setContentType("application/json;");
+      response.getWriter().println(new Gson().toJson(summary));
+    } else {
+      sendStatus(response);
+    }
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    if (profiler == null) {
+      sendUnavailable(response);
+      return;
+    }
+    String action = request.getParameter("action");
+    if ("start".equals(action)) {
+      int seconds = getSeconds(request);
+      if (seconds == -1) {
+        sendMessage(response, HttpServletResponse.SC_BAD_REQUEST,
+            "Please enter a number of seconds between 1 and " + MAX_SECONDS + ".");
+        return;
+      }
+      String settings = request.getParameter("settings");
+      try {
+        profiler.start(Duration.ofSeconds(seconds), settings == null ? DEFAULT_SETTINGS : settings);
+      } catch (IllegalStateException e) {
+        sendMessage(response, HttpServletResponse.SC_CONFLICT, e.getMessage());
+        return;
+      } catch (IllegalArgumentException e) {
+        sendMessage(response, HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        return;
+      }
+    } else if ("stop".equals(action)) {
+      profiler.stop();
+    } else {
+      sendMessage(response, HttpServletResponse.SC_BAD_REQUEST, "Unknown action: " + action);
+      return;
+    }
+    sendStatus(response);
+  }
+
+  @Override
+  public void destroy() {
+    if (profiler == null) {
+      return;
+    }
+    try {
+      profiler.close();
+    } catch (IOException e) {
+      System.err.println("Could not delete recording: " + e);
+    }
+  }
+
+  /** Returns the requested recording length, or -1 if it was invalid. */
+  private int getSeconds(HttpServletRequest request) {
+    String secondsString = request.getParameter("seconds");
+    if (secondsString == null) {
+      return DEFAULT_SECONDS;
+    }
+    int seconds;
+    try {
+      seconds = Integer.parseInt(secondsString);
+    } catch (NumberFormatException e) {
+      System.err.println("Could not convert to int: " + secondsString);
+      return -1;
+    }
+    if (seconds < 1 || seconds > MAX_SECONDS) {
+      System.err.println("Recording length is out of range: " + secondsString);
+      return -1;
+    }
+    return seconds;
+  }
+
+  private void sendStatus(HttpServletResponse response) throws IOException {
+    Map<String, Boolean> status = new LinkedHashMap<>();
+    status.put("recording", profiler.isRecording());
+    status.put("recordingAvailable", profiler.getRecordingFile() != null);
+    response.setContentType("application/json;");
+    response.getWriter().println(new Gson().toJson(status));
+  }
+
+  /**
+   * Returns whether jdk.jfr is present and Flight Recorder can run. The class is looked up by name
+   * so that this servlet still loads on runtimes that lack it.
+   */
+  private static boolean isFlightRecorderAvailable() {
+    try {
+      Class<?> flightRecorder = Class.forName("jdk.jfr.FlightRecorder");
+      return (Boolean) flightRecorder.getMethod("isAvailable").invoke(null);
+    } catch (ReflectiveOperationException | LinkageError e) {
+      System.err.println("Flight Recorder is not available: " + e);
+      return false;
+    }
+  }
+
+  private void sendUnavailable(HttpServletResponse response) throws IOException {
+    sendMessage(response, HttpServletResponse.SC_NOT_IMPLEMENTED,
+        "Profiling needs JDK Flight Recorder, which this Java runtime does not have.");
+  }
+
+  private void sendMessage(HttpServletResponse response, int status, String message)
+      throws IOException {
+    response.setStatus(status);
+    response.setContentType("text/plain");
+    response.getWriter().println(message);
+  }
+}
@@ -14,29 +14,53 @@
 
 package com.google.sps.servlets;
 
+import com.google.sps.data.RequestMetrics;
 import com.google.sps.data.ServerStats;
 import com.google.gson.Gson;
 import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+/**
+ * Servlet that reports JVM and request metrics as JSON, or in the Prometheus text format when
+ * requested with `?format=prometheus`.
+ */
 @WebServlet("/server-stats")
 public final class ServerStatsServlet extends HttpServlet {
 
   private final Date startTime = new Date();
 
+  /**
+   * Length of the previous response of each format. Builders start at this size so scraping the
+   * endpoint doesn't repeatedly grow and copy them.
+   */
+  private volatile int jsonCapacity = 1024;
+  private volatile int prometheusCapacity = 4096;
+
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
     // Calculate server stats
-    Date currentTime = new Date();
-    long maxMemory = Runtime.getRuntime().maxMemory();
-    long usedMemory = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    ServerStats serverStats = collectServerStats();
+
+    if ("prometheus".equals(request.getParameter("format"))) {
+      response.setContentType("text/plain; version=0.0.4; charset=utf-8");
+      response.getWriter().print(convertToPrometheus(serverStats));
+      return;
+    }
 
     // Convert the server stats to JSON
-    ServerStats serverStats = new ServerStats(startTime, currentTime, maxMemory, usedMemory);
     String json = convertToJson(serverStats);
 
     // Send the JSON as the response
@@ -44,24 +68,226 @@ public final class ServerStatsServlet extends HttpServlet {
     response.getWriter().println(json);
   }
 
+  private ServerStats collectServerStats() {
+    Date currentTime = new Date();
+    long maxMemory = Runtime.getRuntime().maxMemory();
+    long usedMemory = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    double processCpuLoad = -1;
+    if (os instanceof com.sun.management.OperatingSystemMXBean) {
+      processCpuLoad = ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuLoad();
+    }
+
+    List<ServerStats.GarbageCollector> garbageCollectors = new ArrayList<>();
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      garbageCollectors.add(new ServerStats.GarbageCollector(
+          gc.getName(), gc.getCollectionCount(), gc.getCollectionTime()));
+    }
+
+    List<ServerStats.MemoryPool> memoryPools = new ArrayList<>();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      MemoryUsage usage = pool.getUsage();
+      memoryPools.add(new ServerStats.MemoryPool(pool.getName(), pool.getType() == MemoryType.HEAP,
+          usage.getUsed(), usage.getCommitted(), usage.getMax()));
+    }
+
+    RequestMetrics.Histogram recent = RequestMetrics.getInstance().getRecentWindow();
+    ServerStats.Requests requests = new ServerStats.Requests(
+        RequestMetrics.getInstance().getTotal().getCount(),
+        recent.getRequestsPerSecond(),
+        recent.getLatencyPercentileMillis(50),
+        recent.getLatencyPercentileMillis(90),
+        recent.getLatencyPercentileMillis(99));
+
+    return new ServerStats(startTime, currentTime, maxMemory, usedMemory,
+        threads.getThreadCount(), threads.getDaemonThreadCount(), threads.getPeakThreadCount(),
+        processCpuLoad, os.getSystemLoadAverage(), garbageCollectors, memoryPools, requests);
+  }
+
   /**
-   * Converts a ServerStats instance into a JSON string using manual String concatentation.
+   * Converts a ServerStats instance into a JSON string by appending to a StringBuilder.
    */
   private String convertToJson(ServerStats serverStats) {
-    String json = "{";
-    json += "\"startTime\": ";
-    json += "\"" + serverStats.getStartTime() + "\"";
-    json += ", ";
-    json += "\"currentTime\": ";
-    json += "\"" + serverStats.getCurrentTime() + "\"";
-    json += ", ";
-    json += "\"maxMemory\": ";
-    json += serverStats.getMaxMemory();
-    json += ", ";
-    json += "\"usedMemory\": ";
-    json += serverStats.getUsedMemory();
-    json += "}";
-    return json;
+    StringBuilder json = new StringBuilder(jsonCapacity);
+    json.append("{");
+    json.append("\"startTime\": ");
+    json.append("\"").append(serverStats.getStartTime()).append("\"");
+    json.append(", ");
+    json.append("\"currentTime\": ");
+    json.append("\"").append(serverStats.getCurrentTime()).append("\"");
+    json.append(", ");
+    json.append("\"maxMemory\": ");
+    json.append(serverStats.getMaxMemory());
+    json.append(", ");
+    json.append("\"usedMemory\": ");
+    json.append(serverStats.getUsedMemory());
+    json.append(", \"threadCount\": ").append(serverStats.getThreadCount());
+    json.append(", \"daemonThreadCount\": ").append(serverStats.getDaemonThreadCount());
+    json.append(", \"peakThreadCount\": ").append(serverStats.getPeakThreadCount());
+    json.append(", \"processCpuLoad\": ").append(serverStats.getProcessCpuLoad());
+    json.append(", \"systemLoadAverage\": ").append(serverStats.getSystemLoadAverage());
+
+    json.append(", \"garbageCollectors\": [");
+    for (int i = 0; i < serverStats.getGarbageCollectors().size(); i++) {
+      ServerStats.GarbageCollector gc = serverStats.getGarbageCollectors().get(i);
+      json.append(i == 0 ? "{" : ", {");
+      json.append("\"name\": ");
+      appendJsonString(json, gc.getName());
+      json.append(", \"collectionCount\": ").append(gc.getCollectionCount());
+      json.append(", \"collectionTimeMillis\": ").append(gc.getCollectionTimeMillis());
+      json.append("}");
+    }
+    json.append("]");
+
+    json.append(", \"memoryPools\": [");
+    for (int i = 0; i < serverStats.getMemoryPools().size(); i++) {
+      ServerStats.MemoryPool pool = serverStats.getMemoryPools().get(i);
+      json.append(i == 0 ? "{" : ", {");
+      json.append("\"name\": ");
+      appendJsonString(json, pool.getName());
+      json.append(", \"heap\": ").append(pool.isHeap());
+      json.append(", \"used\": ").append(pool.getUsed());
+      json.append(", \"committed\": ").append(pool.getCommitted());
+      json.append(", \"max\": ").append(pool.getMax());
+      json.append("}");
+    }
+    json.append("]");
+
+    ServerStats.Requests requests = serverStats.getRequests();
+    json.append(", \"requests\": {");
+    json.append("\"count\": ").append(requests.getCount());
+    json.append(", \"requestsPerSecond\": ").append(requests.getRequestsPerSecond());
+    json.append(", \"latencyP50Millis\": ").append(requests.getLatencyP50Millis());
+    json.append(", \"latencyP90Millis\": ").append(requests.getLatencyP90Millis());
+    json.append(", \"latencyP99Millis\": ").append(requests.getLatencyP99Millis());
+    json.append("}");
+
+    json.append("}");
+    jsonCapacity = json.length();
+    return json.toString();
+  }
+
+  private static void appendJsonString(StringBuilder json, String value) {
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        json.append('\\').append(c);
+      } else if (c < 0x20) {
+        json.append(String.format("\\u%04x", (int) c));
+      } else {
+        json.append(c);
+      }
+    }
+    json.append('"');
+  }
+
+  /**
+   * Converts a ServerStats instance, plus the request latency histogram, into the Prometheus text
+   * exposition format.
+   */
+  private String convertToPrometheus(ServerStats serverStats) {
+    StringBuilder text = new StringBuilder(prometheusCapacity);
+    appendMetricHeader(text, "process_start_time_seconds", "gauge",
+        "Time the server started, in seconds since the epoch.");
+    text.append("process_start_time_seconds ")
+        .append(serverStats.getStartTime().getTime() / 1000.0).append('\n');
+
+    appendMetricHeader(text, "jvm_memory_max_bytes", "gauge", "Maximum heap size.");
+    text.append("jvm_memory_max_bytes ").append(serverStats.getMaxMemory()).append('\n');
+    appendMetricHeader(text, "jvm_memory_used_bytes", "gauge", "Used heap.");
+    text.append("jvm_memory_used_bytes ").append(serverStats.getUsedMemory()).append('\n');
+
+    appendMetricHeader(text, "jvm_threads_current", "gauge", "Live threads.");
+    text.append("jvm_threads_current ").append(serverStats.getThreadCount()).append('\n');
+    appendMetricHeader(text, "jvm_threads_daemon", "gauge", "Live daemon threads.");
+    text.append("jvm_threads_daemon ").append(serverStats.getDaemonThreadCount()).append('\n');
+    appendMetricHeader(text, "jvm_threads_peak", "gauge", "Peak live threads.");
+    text.append("jvm_threads_peak ").append(serverStats.getPeakThreadCount()).append('\n');
+
+    appendMetricHeader(text, "process_cpu_load", "gauge",
+        "CPU used by this process between 0 and 1, negative if unavailable.");
+    text.append("process_cpu_load ").append(serverStats.getProcessCpuLoad()).append('\n');
+    appendMetricHeader(text, "system_load_average_1m", "gauge",
+        "System load average over the last minute, negative if unavailable.");
+    text.append("system_load_average_1m ").append(serverStats.getSystemLoadAverage()).append('\n');
+
+    appendMetricHeader(text, "jvm_gc_collections_total", "counter", "Garbage collections run.");
+    for (ServerStats.GarbageCollector gc : serverStats.getGarbageCollectors()) {
+      text.append("jvm_gc_collections_total{gc=");
+      appendLabelValue(text, gc.getName());
+      text.append("} ").append(gc.getCollectionCount()).append('\n');
+    }
+    appendMetricHeader(text, "jvm_gc_collection_seconds_total", "counter",
+        "Time spent in garbage collection.");
+    for (ServerStats.GarbageCollector gc : serverStats.getGarbageCollectors()) {
+      text.append("jvm_gc_collection_seconds_total{gc=");
+      appendLabelValue(text, gc.getName());
+      text.append("} ").append(gc.getCollectionTimeMillis() / 1000.0).append('\n');
+    }
+
+    appendMemoryPoolMetric(text, serverStats, "used");
+    appendMemoryPoolMetric(text, serverStats, "committed");
+    appendMemoryPoolMetric(text, serverStats, "max");
+
+    // Buckets are cumulative, so exposing every fourth bound (each doubling) is still exact.
+    RequestMetrics.Histogram total = RequestMetrics.getInstance().getTotal();
+    appendMetricHeader(text, "http_request_duration_seconds", "histogram",
+        "Time taken to serve requests.");
+    long cumulativeCount = 0;
+    for (int i = 0; i < RequestMetrics.getBucketCount(); i++) {
+      cumulativeCount += total.getBucketCount(i);
+      boolean last = i == RequestMetrics.getBucketCount() - 1;
+      if (i % 4 == 0 || last) {
+        text.append("http_request_duration_seconds_bucket{le=\"");
+        text.append(last ? "+Inf" : Double.toString(RequestMetrics.getBucketBoundSeconds(i)));
+        text.append("\"} ").append(cumulativeCount).append('\n');
+      }
+    }
+    text.append("http_request_duration_seconds_sum ").append(total.getLatencySumSeconds())
+        .append('\n');
+    text.append("http_request_duration_seconds_count ").append(cumulativeCount).append('\n');
+
+    prometheusCapacity = text.length();
+    return text.toString();
+  }
+
+  private static void appendMemoryPoolMetric(
+      StringBuilder text, ServerStats serverStats, String measure) {
+    String name = "jvm_memory_pool_" + measure + "_bytes";
+    appendMetricHeader(text, name, "gauge", "Memory pool " + measure + " bytes.");
+    for (ServerStats.MemoryPool pool : serverStats.getMemoryPools()) {
+      long value = measure.equals("used") ? pool.getUsed()
+          : measure.equals("committed") ? pool.getCommitted() : pool.getMax();
+      text.append(name).append("{pool=");
+      appendLabelValue(text, pool.getName());
+      text.append(",area=\"").append(pool.isHeap() ? "heap" : "nonheap").append("\"} ");
+      text.append(value).append('\n');
+    }
+  }
+
+  private static void appendMetricHeader(
+      StringBuilder text, String name, String type, String help) {
+    text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+  }
+
+  private static void appendLabelValue(StringBuilder text, String value) {
+    text.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        text.append('\\').append(c);
+      } else if (c == '\n') {
+        text.append("\\n");
+      } else {
+        text.append(c);
+      }
+    }
+    text.append('"');
   }
 
   /**
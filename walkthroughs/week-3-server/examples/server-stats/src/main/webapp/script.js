@@ -30,6 +30,12 @@ function getServerStats() {
         createListElement('Max memory: ' + stats.maxMemory));
     statsListElement.appendChild(
         createListElement('Used memory: ' + stats.usedMemory));
+    statsListElement.appendChild(
+        createListElement('Threads: ' + stats.threadCount));
+    statsListElement.appendChild(
+        createListElement('Requests per second: ' + stats.requests.requestsPerSecond));
+    statsListElement.appendChild(
+        createListElement('99th percentile latency (ms): ' + stats.requests.latencyP99Millis));
   });
 }
 
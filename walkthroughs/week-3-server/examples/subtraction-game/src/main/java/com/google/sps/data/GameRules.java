@@ -0,0 +1,157 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.Arrays;
+
+/**
+ * The rules of a subtraction game variant: the starting piles and the amounts a player may
+ * subtract from a pile. A single pile of 21 with moves 1, 2 and 3 is the classic game; several
+ * piles give multi-pile Nim rules, where each turn subtracts from one pile and whoever empties the
+ * last pile wins. Subtracting more than a pile holds empties it.
+ *
+ * <p>The computer player's strategy comes from a table of Grundy numbers built once when the rules
+ * are created and shared by every game using them, so choosing a move never needs a search.
+ */
+public final class GameRules {
+
+  /** Largest strategy table allowed. It needs (moves + 1) bytes per possible pile size. */
+  private static final long MAX_TABLE_BYTES = 64L << 20;
+
+  /** Limits that keep a move encodable in two bytes of game history. */
+  public static final int MAX_MOVES = 127;
+  public static final int MAX_PILES = 256;
+
+  private final int[] startingPiles;
+  private final int[] moves;
+
+  /** Grundy number of a pile of each size. A position is lost when the piles' numbers XOR to 0. */
+  private final byte[] grundy;
+
+  /**
+   * For each pile size n and Grundy number g, one plus the index of a move that leaves a pile with
+   * Grundy number g, or 0 if there is none. Stored at n * (moves.length + 1) + g.
+   */
+  private final byte[] moveToGrundy;
+
+  /**
+   * Creates rules from the starting piles and the allowed moves.
+   *
+   * @throws IllegalArgumentException if a pile or move is out of range
+   */
+  public GameRules(int[] startingPiles, int[] moves) {
+    if (startingPiles.length == 0 || startingPiles.length > MAX_PILES) {
+      throw new IllegalArgumentException("Expected 1 to " + MAX_PILES + " piles.");
+    }
+    int[] sortedMoves = Arrays.stream(moves).distinct().sorted().toArray();
+    if (sortedMoves.length == 0 || sortedMoves.length > MAX_MOVES || sortedMoves[0] < 1) {
+      throw new IllegalArgumentException("Expected 1 to " + MAX_MOVES + " positive moves.");
+    }
+    int maxPile = 0;
+    for (int pile : startingPiles) {
+      if (pile < 1) {
+        throw new IllegalArgumentException("Piles must be positive.");
+      }
+      maxPile = Math.max(maxPile, pile);
+    }
+    int stride = sortedMoves.length + 1;
+    if ((maxPile + 1L) * stride > MAX_TABLE_BYTES) {
+      throw new IllegalArgumentException("Piles are too large for this many moves.");
+    }
+    this.startingPiles = startingPiles.clone();
+    this.moves = sortedMoves;
+
+    grundy = new byte[maxPile + 1];
+    moveToGrundy = new byte[(maxPile + 1) * stride];
+    // Grundy numbers never exceed the number of moves, so `reachable` fits every value.
+    boolean[] reachable = new boolean[stride];
+    for (int n = 1; n <= maxPile; n++) {
+      Arrays.fill(reachable, false);
+      for (int i = 0; i < sortedMoves.length; i++) {
+        int g = grundy[Math.max(0, n - sortedMoves[i])];
+        reachable[g] = true;
+        if (moveToGrundy[n * stride + g] == 0) {
+          moveToGrundy[n * stride + g] = (byte) (i + 1);
+        }
+      }
+      int mex = 0;
+      while (reachable[mex]) {
+        mex++;
+      }
+      grundy[n] = (byte) mex;
+    }
+  }
+
+  /**
+   * Parses rules from comma-separated lists, e.g. "21" and "1,2,3".
+   *
+   * @throws IllegalArgumentException if either list is malformed or out of range
+   */
+  public static GameRules parse(String startingPiles, String moves) {
+    return new GameRules(parseList(startingPiles), parseList(moves));
+  }
+
+  private static int[] parseList(String list) {
+    return Arrays.stream(list.split("\\s*,\\s*")).mapToInt(Integer::parseInt).toArray();
+  }
+
+  /** Returns a copy of the starting piles. */
+  public int[] getStartingPiles() {
+    return startingPiles.clone();
+  }
+
+  public int getPileCount() {
+    return startingPiles.length;
+  }
+
+  /** Returns the allowed moves in ascending order. */
+  public int[] getMoves() {
+    return moves.clone();
+  }
+
+  /** Returns the amount subtracted by the move at `moveIndex`. */
+  public int getMove(int moveIndex) {
+    return moves[moveIndex];
+  }
+
+  /** Returns the index of the move that subtracts `amount`, or -1 if it isn't allowed. */
+  public int indexOfMove(int amount) {
+    int index = Arrays.binarySearch(moves, amount);
+    return index < 0 ? -1 : index;
+  }
+
+  /**
+   * Returns an optimal move for the player about to move, as {pile, moveIndex}, or null if every
+   * move loses against perfect play. Runs in time proportional to the number of piles.
+   */
+  public int[] findWinningMove(int[] piles) {
+    int nimSum = 0;
+    for (int pile : piles) {
+      nimSum ^= grundy[pile];
+    }
+    if (nimSum == 0) {
+      return null;
+    }
+    int stride = moves.length + 1;
+    for (int i = 0; i < piles.length; i++) {
+      int target = nimSum ^ grundy[piles[i]];
+      if (target < grundy[piles[i]]) {
+        // A pile can always reach any smaller Grundy number than its own.
+        return new int[] {i, moveToGrundy[piles[i] * stride + target] - 1};
+      }
+    }
+    throw new IllegalStateException("No winning move from a winning position.");
+  }
+}
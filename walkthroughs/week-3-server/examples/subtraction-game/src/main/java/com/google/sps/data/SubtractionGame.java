@@ -15,71 +15,168 @@
 package com.google.sps.data;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
- * Class representing the subtraction game, where players take turns subtracting from 21 to reach 0.
+ * Class representing the subtraction game, where players take turns subtracting from the piles
+ * described by its {@link GameRules}. Whoever empties the last pile wins.
  *
- * <p>Note: The private variables in this class are converted into JSON.
+ * <p>Methods are synchronized on the game, so a player's concurrent requests can't corrupt it
+ * while other games stay unaffected.
  */
 public class SubtractionGame {
 
-  /** List of descriptions of turns, e.g. "Player 1 took 3. New total: 18" */
-  private final List<String> history = new ArrayList<>();
+  /** Number of recent moves kept in the history. Older moves are dropped. */
+  public static final int MAX_HISTORY_MOVES = 32;
 
-  /** The total of the current turn. */
-  private int currentTotal = 21;
+  /** Flag set on moves made by the computer. */
+  private static final int COMPUTER_MOVE = 0x80;
 
-  /** Whether this game has ended, i.e. one of the players reached 0. */
+  /** Bits of a move that hold the index of the amount subtracted in the rules' move list. */
+  private static final int MOVE_INDEX_MASK = 0x7f;
+
+  private final GameRules rules;
+
+  /**
+   * Ring buffer of the most recent moves, two bytes each: the move index (with the computer flag)
+   * and the pile. Descriptions such as "Player 1 subtracted 3" are only built when the history is
+   * requested.
+   */
+  private final byte[] moves = new byte[2 * MAX_HISTORY_MOVES];
+
+  /** Number of moves made in this game, including any dropped from the history. */
+  private int moveCount = 0;
+
+  /** The piles before the oldest move still in the history. */
+  private final int[] historyStartPiles;
+
+  /** The piles of the current turn. */
+  private final int[] piles;
+
+  /** Whether this game has ended, i.e. one of the players emptied the last pile. */
   private boolean gameOver = false;
 
+  public SubtractionGame(GameRules rules) {
+    this.rules = rules;
+    this.piles = rules.getStartingPiles();
+    this.historyStartPiles = rules.getStartingPiles();
+  }
+
   /** Returns whether this game has ended. */
-  public boolean isGameOver() {
+  public synchronized boolean isGameOver() {
     return gameOver;
   }
 
-  /** Takes the player's turn, subtracting `playerChoice` from the total. */
-  public void takePlayerTurn(int playerChoice) {
-    currentTotal -= playerChoice;
-    if (currentTotal < 0) {
-      currentTotal = 0;
+  /** Returns the piles of the current turn. */
+  public synchronized int[] getPiles() {
+    return piles.clone();
+  }
+
+  /** Returns whether the player may subtract `amount` from `pile`. */
+  public synchronized boolean isValidMove(int pile, int amount) {
+    return pile >= 0 && pile < piles.length && piles[pile] > 0 && rules.indexOfMove(amount) != -1;
+  }
+
+  /**
+   * Takes the player's turn, subtracting `playerChoice` from `pile`. The move must be valid
+   * according to {@link #isValidMove}.
+   */
+  public synchronized void takePlayerTurn(int pile, int playerChoice) {
+    // Another request from the same player may have finished the game first.
+    if (gameOver || !isValidMove(pile, playerChoice)) {
+      return;
     }
-    logMove("Player 1", playerChoice, currentTotal);
+    move(false, pile, rules.indexOfMove(playerChoice));
 
-    if (currentTotal == 0) {
+    if (gameOver) {
       // Player 1 won
-      history.add("Player 1 won!");
-      history.add("I want a rematch!");
-      gameOver = true;
-    } else {
-      takeComputerTurn();
+      return;
     }
+    takeComputerTurn();
   }
 
   private void takeComputerTurn() {
-    int computerChoice;
-    if (currentTotal <= 3) {
-      // If the current total is 1, 2, or 3, then the computer can win this turn
-      // by subtracting the current total.
-      computerChoice = currentTotal;
+    int[] winningMove = rules.findWinningMove(piles);
+    if (winningMove != null) {
+      // The table of Grundy numbers says which move leaves the player in a losing position.
+      move(true, winningMove[0], winningMove[1]);
     } else {
-      // The computer can't win this turn,
-      // so generate a random number between 1 and 3 inclusive.
-      computerChoice = 1 + (int) (Math.random() * 3);
+      // Every move loses against perfect play, so pick a random one and hope the player slips.
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      int pile;
+      do {
+        pile = random.nextInt(piles.length);
+      } while (piles[pile] == 0);
+      move(true, pile, random.nextInt(rules.getMoves().length));
     }
+  }
 
-    currentTotal -= computerChoice;
-    logMove("Computer", computerChoice, currentTotal);
+  private void move(boolean computer, int pile, int moveIndex) {
+    piles[pile] = Math.max(0, piles[pile] - rules.getMove(moveIndex));
+    logMove(computer, pile, moveIndex);
+    gameOver = Arrays.stream(piles).allMatch(p -> p == 0);
+  }
 
-    if (currentTotal == 0) {
-      history.add("Computer won!");
-      history.add("Want a rematch?");
-      gameOver = true;
+  private void logMove(boolean computer, int pile, int moveIndex) {
+    int slot = 2 * (moveCount % MAX_HISTORY_MOVES);
+    if (moveCount >= MAX_HISTORY_MOVES) {
+      // The oldest move is overwritten, so the history now starts after it.
+      applyMove(historyStartPiles, moves[slot], moves[slot + 1]);
     }
+    moves[slot] = (byte) (computer ? COMPUTER_MOVE | moveIndex : moveIndex);
+    moves[slot + 1] = (byte) pile;
+    moveCount++;
   }
 
-  private void logMove(String player, int choice, int newTotal) {
-    history.add(player + " subtracted " + choice);
-    history.add("New total: " + newTotal);
+  private int applyMove(int[] piles, byte move, byte pile) {
+    int amount = rules.getMove(move & MOVE_INDEX_MASK);
+    int pileIndex = pile & 0xff;
+    piles[pileIndex] = Math.max(0, piles[pileIndex] - amount);
+    return amount;
+  }
+
+  /** Returns descriptions of the recent turns, e.g. "Player 1 subtracted 3", "New total: 18". */
+  public synchronized List<String> getHistory() {
+    List<String> history = new ArrayList<>();
+    int firstMove = Math.max(0, moveCount - MAX_HISTORY_MOVES);
+    if (firstMove > 0) {
+      history.add("(" + firstMove + " earlier moves not shown)");
+    }
+    int[] replayPiles = historyStartPiles.clone();
+    boolean computerMovedLast = false;
+    for (int i = firstMove; i < moveCount; i++) {
+      int slot = 2 * (i % MAX_HISTORY_MOVES);
+      computerMovedLast = (moves[slot] & COMPUTER_MOVE) != 0;
+      int amount = applyMove(replayPiles, moves[slot], moves[slot + 1]);
+      String player = computerMovedLast ? "Computer" : "Player 1";
+      if (replayPiles.length == 1) {
+        history.add(player + " subtracted " + amount);
+        history.add("New total: " + replayPiles[0]);
+      } else {
+        int pileNumber = (moves[slot + 1] & 0xff) + 1;
+        history.add(player + " subtracted " + amount + " from pile " + pileNumber);
+        history.add("New piles: " + formatPiles(replayPiles));
+      }
+    }
+    if (gameOver) {
+      if (computerMovedLast) {
+        history.add("Computer won!");
+        history.add("Want a rematch?");
+      } else {
+        history.add("Player 1 won!");
+        history.add("I want a rematch!");
+      }
+    }
+    return history;
+  }
+
+  private static String formatPiles(int[] piles) {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < piles.length; i++) {
+      text.append(i == 0 ? "" : ", ").append(piles[i]);
+    }
+    return text.toString();
   }
 }
@@ -0,0 +1,87 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds one {@link SubtractionGame} per session. Lookups never take a global lock, and games that
+ * haven't been played for a while are evicted so abandoned sessions don't use memory forever.
+ */
+public final class SubtractionGameStore {
+
+  private static final long IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+  private static final long EVICTION_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  private final GameRules rules;
+  private final ConcurrentMap<String, Entry> games = new ConcurrentHashMap<>();
+  private final AtomicLong nextEvictionMillis = new AtomicLong();
+
+  /** Creates a store whose new games are played by `rules`. */
+  public SubtractionGameStore(GameRules rules) {
+    this.rules = rules;
+  }
+
+  /** Returns the session's game, or null if it has none. */
+  public SubtractionGame get(String sessionId) {
+    evictIdleGamesIfDue();
+    Entry entry = games.get(sessionId);
+    if (entry == null) {
+      return null;
+    }
+    entry.lastAccessMillis = System.currentTimeMillis();
+    return entry.game;
+  }
+
+  /** Returns the session's game, or starts a new one if it has none or its game is over. */
+  public SubtractionGame getPlayableGame(String sessionId) {
+    evictIdleGamesIfDue();
+    Entry entry =
+        games.compute(
+            sessionId,
+            (id, existing) ->
+                existing == null || existing.game.isGameOver() ? new Entry(rules) : existing);
+    entry.lastAccessMillis = System.currentTimeMillis();
+    return entry.game;
+  }
+
+  /** Returns the number of games in memory. */
+  public int size() {
+    return games.size();
+  }
+
+  /** Evicts idle games at most once per interval; only the request that claims the slot does it. */
+  private void evictIdleGamesIfDue() {
+    long now = System.currentTimeMillis();
+    long due = nextEvictionMillis.get();
+    if (now < due || !nextEvictionMillis.compareAndSet(due, now + EVICTION_INTERVAL_MILLIS)) {
+      return;
+    }
+    long cutoff = now - IDLE_TIMEOUT_MILLIS;
+    games.values().removeIf(entry -> entry.lastAccessMillis < cutoff);
+  }
+
+  private static final class Entry {
+    private final SubtractionGame game;
+    private volatile long lastAccessMillis = System.currentTimeMillis();
+
+    private Entry(GameRules rules) {
+      game = new SubtractionGame(rules);
+    }
+  }
+}
@@ -14,43 +14,95 @@
 
 package com.google.sps.servlets;
 
+import com.google.sps.data.GameRules;
 import com.google.sps.data.SubtractionGame;
+import com.google.sps.data.SubtractionGameStore;
 import com.google.gson.Gson;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebInitParam;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
 
-/** Servlet that encapsulates the subtraction game. */
-@WebServlet("/subtraction-game")
+/**
+ * Servlet that encapsulates the subtraction game. Each visitor's session gets its own game.
+ *
+ * <p>The `piles` and `moves` init parameters configure the variant, e.g. piles "3,4,5" for
+ * multi-pile Nim or moves "1,3,4" for a different subtraction set.
+ */
+@WebServlet(
+    urlPatterns = "/subtraction-game",
+    initParams = {
+      @WebInitParam(name = "piles", value = "21"),
+      @WebInitParam(name = "moves", value = "1,2,3")
+    })
 public final class SubtractionServlet extends HttpServlet {
 
-  private SubtractionGame game = new SubtractionGame();
+  private GameRules rules;
+  private SubtractionGameStore games;
+
+  /** Builds the rules, including the computer player's strategy table, once for all games. */
+  @Override
+  public void init() throws ServletException {
+    try {
+      rules = GameRules.parse(getInitParameter("piles"), getInitParameter("moves"));
+    } catch (IllegalArgumentException e) {
+      throw new ServletException("Invalid subtraction game rules", e);
+    }
+    games = new SubtractionGameStore(rules);
+  }
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    // Visitors who haven't played yet see a new game, which isn't stored until they move.
+    HttpSession session = request.getSession(false);
+    SubtractionGame game = session == null ? null : games.get(session.getId());
+    if (game == null) {
+      game = new SubtractionGame(rules);
+    }
+
+    Map<String, Object> state = new LinkedHashMap<>();
+    synchronized (game) {
+      int[] piles = game.getPiles();
+      state.put("history", game.getHistory());
+      state.put("currentTotal", Arrays.stream(piles).sum());
+      state.put("piles", piles);
+      state.put("gameOver", game.isGameOver());
+    }
+    state.put("startingPiles", rules.getStartingPiles());
+    state.put("moves", rules.getMoves());
+
     response.setContentType("application/json");
-    String json = new Gson().toJson(game);
+    String json = new Gson().toJson(state);
     response.getWriter().println(json);
   }
 
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    // If the user sends another POST request after the game is over, then start a new game.
-    if (game.isGameOver()) {
-      game = new SubtractionGame();
-    }
-
     // Get the input from the form.
     int playerChoice = getPlayerChoice(request);
-    if (playerChoice == -1) {
+    int pile = getPile(request);
+    if (playerChoice == -1 || pile == -1) {
       response.setContentType("text/html");
-      response.getWriter().println("Please enter an integer between 1 and 3.");
+      response.getWriter().println("Please enter one of " + describeMoves() + ".");
       return;
     }
 
-    game.takePlayerTurn(playerChoice);
+    // If the user sends another POST request after the game is over, then start a new game.
+    SubtractionGame game = games.getPlayableGame(request.getSession(true).getId());
+    if (!game.isValidMove(pile, playerChoice)) {
+      response.setContentType("text/html");
+      response.getWriter().println("Please choose a pile that isn't empty.");
+      return;
+    }
+    game.takePlayerTurn(pile, playerChoice);
 
     // Redirect back to the HTML page.
     response.sendRedirect("/index.html");
@@ -70,12 +122,43 @@ public final class SubtractionServlet extends HttpServlet {
       return -1;
     }
 
-    // Check that the input is between 1 and 3.
-    if (playerChoice < 1 || playerChoice > 3) {
-      System.err.println("Player choice is out of range: " + playerChoiceString);
+    // Check that the input is one of the allowed moves.
+    if (rules.indexOfMove(playerChoice) == -1) {
+      System.err.println("Player choice is not an allowed move: " + playerChoiceString);
       return -1;
     }
 
     return playerChoice;
   }
+
+  /**
+   * Returns the zero-based pile chosen by the player, or -1 if the choice was invalid. The form
+   * numbers piles from 1 and may leave the pile out when there is only one.
+   */
+  private int getPile(HttpServletRequest request) {
+    String pileString = request.getParameter("pile");
+    if (pileString == null || pileString.isEmpty()) {
+      return 0;
+    }
+
+    int pile;
+    try {
+      pile = Integer.parseInt(pileString) - 1;
+    } catch (NumberFormatException e) {
+      System.err.println("Could not convert to int: " + pileString);
+      return -1;
+    }
+
+    if (pile < 0 || pile >= rules.getPileCount()) {
+      System.err.println("Pile is out of range: " + pileString);
+      return -1;
+    }
+
+    return pile;
+  }
+
+  private String describeMoves() {
+    return Arrays.stream(rules.getMoves()).mapToObj(Integer::toString)
+        .collect(Collectors.joining(", "));
+  }
 }
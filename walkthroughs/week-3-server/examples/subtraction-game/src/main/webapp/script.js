@@ -17,12 +17,19 @@
  */
 function getSubtractionGame() {
   fetch('/subtraction-game').then(response => response.json()).then((game) => {
+    document.getElementById('moves').innerText =
+        'Take turns subtracting ' + game.moves.join(', ') + ' from a pile.';
+    if (game.startingPiles.length > 1) {
+      document.getElementById('pile-input').style.display = 'block';
+    }
+
+    // The current game is over, show the piles for the next game.
+    const piles = game.gameOver ? game.startingPiles : game.piles;
     const totalEl = document.getElementById('total');
-    if (game.gameOver) {
-      // The current game is over, show the total for the next game.
-      totalEl.innerText = 'Total: 21';
+    if (piles.length == 1) {
+      totalEl.innerText = 'Total: ' + piles[0];
     } else {
-      totalEl.innerText = 'Total: ' + game.currentTotal;
+      totalEl.innerText = 'Piles: ' + piles.join(', ');
     }
 
     // Build the list of history entries.
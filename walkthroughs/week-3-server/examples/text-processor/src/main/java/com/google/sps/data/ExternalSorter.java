@@ -0,0 +1,165 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts more words than fit in memory. Words are buffered until they take up about
+ * `memoryLimitBytes`, then sorted and written to a temporary file. Reading the result merges those
+ * files with whatever is still buffered.
+ */
+public final class ExternalSorter implements Closeable {
+
+  /** Rough heap cost of a String beyond its characters. */
+  private static final int WORD_OVERHEAD_BYTES = 40;
+
+  private static final int RUN_BUFFER_SIZE = 8192;
+
+  private final long memoryLimitBytes;
+  private final Comparator<String> order;
+  private final List<String> buffer = new ArrayList<>();
+  private final List<Path> runs = new ArrayList<>();
+  private long bufferedBytes = 0;
+
+  public ExternalSorter(long memoryLimitBytes, Comparator<String> order) {
+    this.memoryLimitBytes = memoryLimitBytes;
+    this.order = order;
+  }
+
+  /** Adds a word, spilling the buffered words to disk if they exceed the memory limit. */
+  public void add(String word) throws IOException {
+    buffer.add(word);
+    bufferedBytes += WORD_OVERHEAD_BYTES + 2L * word.length();
+    if (bufferedBytes >= memoryLimitBytes) {
+      spill();
+    }
+  }
+
+  /** Returns the number of sorted runs written to disk so far. */
+  public int getSpilledRuns() {
+    return runs.size();
+  }
+
+  /** Passes every added word to `consumer` in sorted order. */
+  public void forEachSorted(WordTokenizer.WordConsumer consumer) throws IOException {
+    buffer.sort(order);
+    if (runs.isEmpty()) {
+      for (String word : buffer) {
+        consumer.accept(word);
+      }
+      return;
+    }
+
+    List<RunReader> readers = new ArrayList<>();
+    PriorityQueue<RunReader> heads =
+        new PriorityQueue<>(runs.size() + 1, (a, b) -> order.compare(a.head, b.head));
+    try {
+      for (Path run : runs) {
+        RunReader reader = new RunReader(run);
+        readers.add(reader);
+        if (reader.advance()) {
+          heads.add(reader);
+        }
+      }
+      int next = 0;
+      while (!heads.isEmpty() || next < buffer.size()) {
+        // The in-memory words are merged in as one more sorted run.
+        if (heads.isEmpty()
+            || (next < buffer.size() && order.compare(buffer.get(next), heads.peek().head) <= 0)) {
+          consumer.accept(buffer.get(next++));
+          continue;
+        }
+        RunReader reader = heads.poll();
+        consumer.accept(reader.head);
+        if (reader.advance()) {
+          heads.add(reader);
+        }
+      }
+    } finally {
+      for (RunReader reader : readers) {
+        reader.close();
+      }
+    }
+  }
+
+  /** Deletes any temporary files. */
+  @Override
+  public void close() throws IOException {
+    for (Path run : runs) {
+      Files.deleteIfExists(run);
+    }
+    runs.clear();
+    buffer.clear();
+  }
+
+  private void spill() throws IOException {
+    buffer.sort(order);
+    Path run = Files.createTempFile("text-sort", ".run");
+    runs.add(run);
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(run), RUN_BUFFER_SIZE))) {
+      for (String word : buffer) {
+        byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
+    }
+    buffer.clear();
+    bufferedBytes = 0;
+  }
+
+  /** Reads back one sorted run, one word at a time. */
+  private static final class RunReader implements Closeable {
+    private final DataInputStream in;
+    private String head;
+
+    RunReader(Path run) throws IOException {
+      in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), RUN_BUFFER_SIZE));
+    }
+
+    /** Reads the next word into `head`, returning false at the end of the run. */
+    boolean advance() throws IOException {
+      int length;
+      try {
+        length = in.readInt();
+      } catch (EOFException e) {
+        return false;
+      }
+      byte[] bytes = new byte[length];
+      in.readFully(bytes);
+      head = new String(bytes, StandardCharsets.UTF_8);
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,111 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Operations on lists of words. Inputs of at least {@link #PARALLEL_THRESHOLD} words are processed
+ * in parallel on the common fork-join pool.
+ */
+public final class WordOperations {
+
+  public static final int PARALLEL_THRESHOLD = 10_000;
+
+  /** Separator between words, compiled once instead of on every call to String.split. */
+  private static final Pattern SEPARATOR = Pattern.compile("\\s*,\\s*");
+
+  /** Sorts case-insensitively, breaking ties so that equal words are always next to each other. */
+  public static final Comparator<String> IGNORE_CASE_ORDER =
+      String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+
+  /** Orders word counts from most to least frequent, then alphabetically. */
+  private static final Comparator<Map.Entry<String, Long>> MOST_FREQUENT_FIRST =
+      Map.Entry.<String, Long>comparingByValue().reversed()
+          .thenComparing(Map.Entry.comparingByKey());
+
+  private WordOperations() {}
+
+  /** Splits comma-separated text into words. */
+  public static String[] split(String text) {
+    return SEPARATOR.split(text);
+  }
+
+  /** Sorts `words` in place, in natural or case-insensitive order. */
+  public static void sort(String[] words, boolean ignoreCase) {
+    // parallelSort falls back to a sequential sort for small arrays.
+    Arrays.parallelSort(words, ignoreCase ? IGNORE_CASE_ORDER : Comparator.naturalOrder());
+  }
+
+  /** Returns `words` without duplicates, keeping the first occurrence of each word in order. */
+  public static String[] dedupe(String[] words) {
+    if (words.length < PARALLEL_THRESHOLD) {
+      return new LinkedHashSet<>(Arrays.asList(words)).toArray(new String[0]);
+    }
+    return Arrays.stream(words).parallel().distinct().toArray(String[]::new);
+  }
+
+  /** Returns how many times each word occurs, most frequent first. */
+  public static List<Map.Entry<String, Long>> countFrequencies(String[] words) {
+    List<Map.Entry<String, Long>> counts = new ArrayList<>(frequencies(words).entrySet());
+    counts.sort(MOST_FREQUENT_FIRST);
+    return counts;
+  }
+
+  /**
+   * Returns the `k` most frequent words and their counts, most frequent first. Only k entries are
+   * kept in the heap, instead of sorting every distinct word.
+   */
+  public static List<Map.Entry<String, Long>> topK(String[] words, int k) {
+    Map<String, Long> frequencies = frequencies(words);
+    // k comes from the request, so size the heap by what it can actually hold.
+    k = Math.min(k, frequencies.size());
+    PriorityQueue<Map.Entry<String, Long>> top =
+        new PriorityQueue<>(k + 1, MOST_FREQUENT_FIRST.reversed());
+    for (Map.Entry<String, Long> count : frequencies.entrySet()) {
+      top.add(new AbstractMap.SimpleImmutableEntry<>(count));
+      if (top.size() > k) {
+        top.poll();
+      }
+    }
+    List<Map.Entry<String, Long>> result = new ArrayList<>(top);
+    result.sort(MOST_FREQUENT_FIRST);
+    return result;
+  }
+
+  private static Map<String, Long> frequencies(String[] words) {
+    if (words.length < PARALLEL_THRESHOLD) {
+      Map<String, Long> counts = new HashMap<>();
+      for (String word : words) {
+        counts.merge(word, 1L, Long::sum);
+      }
+      return counts;
+    }
+    // Threads count into one ConcurrentHashMap instead of merging per-thread maps.
+    return Arrays.stream(words).parallel()
+        .collect(Collectors.groupingByConcurrent(Function.identity(), Collectors.counting()));
+  }
+}
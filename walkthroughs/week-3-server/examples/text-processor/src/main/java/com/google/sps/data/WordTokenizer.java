@@ -0,0 +1,96 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits comma-separated text into words as it is read, without holding more than the current
+ * word in memory. Whitespace next to a comma is dropped and trailing empty words are ignored, so
+ * the words match those of {@code text.split("\\s*,\\s*")}.
+ */
+public final class WordTokenizer {
+
+  /** Longest word accepted, so input without commas can't fill the heap. */
+  public static final int MAX_WORD_LENGTH = 1 << 20;
+
+  private static final int READ_BUFFER_SIZE = 8192;
+
+  /** Receives words as they are found. */
+  public interface WordConsumer {
+    void accept(String word) throws IOException;
+  }
+
+  private WordTokenizer() {}
+
+  /** Reads `reader` to the end, passing each word to `consumer` in order. */
+  public static void tokenize(Reader reader, WordConsumer consumer) throws IOException {
+    char[] buffer = new char[READ_BUFFER_SIZE];
+    StringBuilder word = new StringBuilder();
+    boolean readAnything = false;
+    boolean afterComma = false;
+    int pendingEmptyWords = 0;
+
+    int read;
+    while ((read = reader.read(buffer)) != -1) {
+      for (int i = 0; i < read; i++) {
+        char c = buffer[i];
+        readAnything = true;
+        if (c == ',') {
+          int end = word.length();
+          while (end > 0 && Character.isWhitespace(word.charAt(end - 1))) {
+            end--;
+          }
+          word.setLength(end);
+          pendingEmptyWords = emit(word, pendingEmptyWords, consumer);
+          afterComma = true;
+        } else if (afterComma && Character.isWhitespace(c)) {
+          continue;
+        } else {
+          afterComma = false;
+          if (word.length() == MAX_WORD_LENGTH) {
+            throw new IOException("Words can be at most " + MAX_WORD_LENGTH + " characters long.");
+          }
+          word.append(c);
+        }
+      }
+    }
+
+    if (!readAnything) {
+      // Splitting empty text gives a single empty word.
+      consumer.accept("");
+    } else {
+      emit(word, pendingEmptyWords, consumer);
+    }
+  }
+
+  /**
+   * Passes `word` to the consumer and clears it. Empty words are held back and only passed on once
+   * a non-empty word follows them. Returns the number of held-back empty words.
+   */
+  private static int emit(StringBuilder word, int pendingEmptyWords, WordConsumer consumer)
+      throws IOException {
+    if (word.length() == 0) {
+      return pendingEmptyWords + 1;
+    }
+    for (int i = 0; i < pendingEmptyWords; i++) {
+      consumer.accept("");
+    }
+    consumer.accept(word.toString());
+    word.setLength(0);
+    return 0;
+  }
+}
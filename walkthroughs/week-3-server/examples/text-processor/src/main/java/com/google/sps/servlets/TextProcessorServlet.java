@@ -14,23 +14,52 @@
 
 package com.google.sps.servlets;
 
+import com.google.sps.data.ExternalSorter;
+import com.google.sps.data.WordOperations;
+import com.google.sps.data.WordTokenizer;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.Arrays;
+import java.util.Comparator;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Servlet that processes text. */
+/**
+ * Servlet that processes text.
+ *
+ * <p>Form submissions are processed in memory and can also dedupe words, count them or find the
+ * most frequent ones. Any other request body, e.g. a text/plain upload with the options in the
+ * query string, is streamed: words are processed as they arrive and written back as they are
+ * ready, so the heap used doesn't grow with the size of the input.
+ */
 @WebServlet("/text")
 public final class TextProcessorServlet extends HttpServlet {
 
+  /** Memory used for sorting a streamed request before words are spilled to temporary files. */
+  private static final long SORT_MEMORY_LIMIT_BYTES = 16L << 20;
+
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    if (!isFormSubmission(request)) {
+      processStream(request, response);
+      return;
+    }
+
     // Get the input from the form.
     String text = getParameter(request, "text-input", "");
     boolean upperCase = Boolean.parseBoolean(getParameter(request, "upper-case", "false"));
     boolean sort = Boolean.parseBoolean(getParameter(request, "sort", "false"));
+    boolean ignoreCase = Boolean.parseBoolean(getParameter(request, "ignore-case", "false"));
+    boolean dedupe = Boolean.parseBoolean(getParameter(request, "dedupe", "false"));
+    boolean count = Boolean.parseBoolean(getParameter(request, "count", "false"));
+    int topK = getTopK(request);
+    if (topK == -1) {
+      response.setContentType("text/html");
+      response.getWriter().println("Please enter a positive integer for top-k.");
+      return;
+    }
 
     // Convert the text to upper case.
     if (upperCase) {
@@ -38,18 +67,94 @@ public final class TextProcessorServlet extends HttpServlet {
     }
 
     // Break the text into individual words.
-    String[] words = text.split("\\s*,\\s*");
+    String[] words = WordOperations.split(text);
+
+    // Respond with the most frequent words, or every word's frequency.
+    response.setContentType("text/html;");
+    if (topK > 0) {
+      response.getWriter().println(WordOperations.topK(words, topK));
+      return;
+    }
+    if (count) {
+      response.getWriter().println(WordOperations.countFrequencies(words));
+      return;
+    }
+
+    // Remove repeated words.
+    if (dedupe) {
+      words = WordOperations.dedupe(words);
+    }
 
     // Sort the words.
     if (sort) {
-      Arrays.sort(words);
+      WordOperations.sort(words, ignoreCase);
     }
 
     // Respond with the result.
-    response.setContentType("text/html;");
     response.getWriter().println(Arrays.toString(words));
   }
 
+  /** Returns the requested number of most frequent words, 0 if none, or -1 if it was invalid. */
+  private int getTopK(HttpServletRequest request) {
+    String topKString = getParameter(request, "top-k", "");
+    if (topKString.isEmpty()) {
+      return 0;
+    }
+
+    int topK;
+    try {
+      topK = Integer.parseInt(topKString);
+    } catch (NumberFormatException e) {
+      System.err.println("Could not convert to int: " + topKString);
+      return -1;
+    }
+
+    if (topK < 1) {
+      System.err.println("Top-k is out of range: " + topKString);
+      return -1;
+    }
+
+    return topK;
+  }
+
+  /**
+   * Tokenizes the request body as it is read. Unsorted words are written straight back; sorted
+   * words go through an external merge sort that spills to disk above a memory threshold.
+   */
+  private void processStream(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    // With a streamed body, the options can only come from the query string.
+    boolean upperCase = Boolean.parseBoolean(getParameter(request, "upper-case", "false"));
+    boolean sort = Boolean.parseBoolean(getParameter(request, "sort", "false"));
+    boolean ignoreCase = Boolean.parseBoolean(getParameter(request, "ignore-case", "false"));
+    if (request.getCharacterEncoding() == null) {
+      request.setCharacterEncoding("UTF-8");
+    }
+
+    response.setContentType("text/plain;charset=UTF-8");
+    WordListWriter result = new WordListWriter(response.getWriter());
+    if (sort) {
+      try (ExternalSorter sorter =
+          new ExternalSorter(SORT_MEMORY_LIMIT_BYTES, ignoreCase
+              ? WordOperations.IGNORE_CASE_ORDER : Comparator.<String>naturalOrder())) {
+        WordTokenizer.tokenize(
+            request.getReader(), word -> sorter.add(upperCase ? word.toUpperCase() : word));
+        sorter.forEachSorted(result::write);
+      }
+    } else {
+      WordTokenizer.tokenize(
+          request.getReader(), word -> result.write(upperCase ? word.toUpperCase() : word));
+    }
+    result.finish();
+  }
+
+  private boolean isFormSubmission(HttpServletRequest request) {
+    String contentType = request.getContentType();
+    return contentType == null
+        || contentType.startsWith("application/x-www-form-urlencoded")
+        || contentType.startsWith("multipart/form-data");
+  }
+
   /**
    * @return the request parameter, or the default value if the parameter
    *         was not specified by the client
@@ -61,4 +166,24 @@ public final class TextProcessorServlet extends HttpServlet {
     }
     return value;
   }
+
+  /** Writes words in the same format as {@link Arrays#toString(Object[])}, one at a time. */
+  private static final class WordListWriter {
+    private final PrintWriter out;
+    private boolean first = true;
+
+    WordListWriter(PrintWriter out) {
+      this.out = out;
+    }
+
+    void write(String word) {
+      out.print(first ? "[" : ", ");
+      out.print(word);
+      first = false;
+    }
+
+    void finish() {
+      out.println(first ? "[]" : "]");
+    }
+  }
 }
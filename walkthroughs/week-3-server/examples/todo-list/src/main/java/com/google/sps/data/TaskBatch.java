@@ -0,0 +1,69 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The JSON body of a batch request, either {"titles": [...]} for creating
+ * tasks or {"ids": [...]} for deleting or completing them.
+ */
+public final class TaskBatch {
+
+  /**
+   * The most tasks handled by a single request. Datastore caps batch puts and
+   * deletes at 500 entities, so every batch fits in one RPC.
+   */
+  public static final int MAX_SIZE = 500;
+
+  private static final Gson GSON = new Gson();
+
+  private List<String> titles;
+  private List<Long> ids;
+
+  /**
+   * Parses a batch from the given request body. Returns null if the body is
+   * not valid JSON, contains null entries or holds more than MAX_SIZE items.
+   */
+  public static TaskBatch parse(Reader reader) {
+    TaskBatch batch;
+    try {
+      batch = GSON.fromJson(reader, TaskBatch.class);
+    } catch (JsonParseException e) {
+      System.err.println("Could not parse batch: " + e.getMessage());
+      return null;
+    }
+    if (batch == null || !isValid(batch.titles) || !isValid(batch.ids)) {
+      return null;
+    }
+    return batch;
+  }
+
+  private static boolean isValid(List<?> items) {
+    return items == null || (items.size() <= MAX_SIZE && !items.contains(null));
+  }
+
+  public List<String> getTitles() {
+    return titles == null ? Collections.<String>emptyList() : titles;
+  }
+
+  public List<Long> getIds() {
+    return ids == null ? Collections.<Long>emptyList() : ids;
+  }
+}
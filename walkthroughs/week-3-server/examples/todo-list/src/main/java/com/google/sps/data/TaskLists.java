@@ -0,0 +1,57 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.users.User;
+import com.google.appengine.api.users.UserService;
+import com.google.appengine.api.users.UserServiceFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the Datastore keys for per-user todo lists. Every task is stored
+ * under a TaskList ancestor named after its owner, so each user's list is its
+ * own entity group: queries on it are strongly consistent and only touch that
+ * user's slice of the index.
+ */
+public final class TaskLists {
+
+  private TaskLists() {}
+
+  /**
+   * Returns the key of the current user's list, or null if nobody is logged
+   * in. The TaskList entity itself is never stored; its key only serves as the
+   * parent of the user's tasks.
+   */
+  public static Key getCurrentListKey() {
+    UserService userService = UserServiceFactory.getUserService();
+    if (!userService.isUserLoggedIn()) {
+      return null;
+    }
+    User user = userService.getCurrentUser();
+    return KeyFactory.createKey("TaskList", user.getUserId());
+  }
+
+  /** Returns the keys of the tasks with the given ids in the given list. */
+  public static List<Key> createTaskKeys(Key listKey, List<Long> ids) {
+    List<Key> taskEntityKeys = new ArrayList<>();
+    for (long id : ids) {
+      taskEntityKeys.add(KeyFactory.createKey(listKey, "Task", id));
+    }
+    return taskEntityKeys;
+  }
+}
@@ -0,0 +1,32 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.List;
+
+/**
+ * One page of a todo list. The next page can be requested by passing
+ * nextCursor back to the server; it is null on the last page.
+ */
+public final class TaskPage {
+
+  private final List<Task> tasks;
+  private final String nextCursor;
+
+  public TaskPage(List<Task> tasks, String nextCursor) {
+    this.tasks = tasks;
+    this.nextCursor = nextCursor;
+  }
+}
@@ -0,0 +1,79 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.sps.data.TaskBatch;
+import com.google.sps.data.TaskLists;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet responsible for completing many tasks at once. Expects a JSON body
+ * of the form {"ids": [1, 2, 3]}. Each task is moved to a CompletedTask entity
+ * with the same id, so the whole batch costs one get, one put and one delete.
+ */
+@WebServlet("/complete-tasks")
+public class CompleteTasksServlet extends HttpServlet {
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    Key listKey = TaskLists.getCurrentListKey();
+    if (listKey == null) {
+      response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+      return;
+    }
+
+    TaskBatch batch = TaskBatch.parse(request.getReader());
+    if (batch == null) {
+      response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+      response.setContentType("text/plain");
+      response.getWriter().println(
+          "Please send a JSON object with up to " + TaskBatch.MAX_SIZE + " ids.");
+      return;
+    }
+
+    List<Key> taskEntityKeys = TaskLists.createTaskKeys(listKey, batch.getIds());
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Map<Key, Entity> taskEntities = datastore.get(taskEntityKeys);
+
+    long completedTimestamp = System.currentTimeMillis();
+    List<Entity> completedEntities = new ArrayList<>();
+    for (Entity taskEntity : taskEntities.values()) {
+      Entity completedEntity =
+          new Entity("CompletedTask", taskEntity.getKey().getId(), listKey);
+      completedEntity.setPropertiesFrom(taskEntity);
+      completedEntity.setProperty("completedTimestamp", completedTimestamp);
+      completedEntities.add(completedEntity);
+    }
+
+    // Store the completed copies before deleting the originals so that a
+    // failed request can simply be retried without losing any tasks.
+    datastore.put(completedEntities);
+    datastore.delete(taskEntities.keySet());
+
+    response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+  }
+}
@@ -14,14 +14,22 @@
 
 package com.google.sps.servlets;
 
+import com.google.appengine.api.datastore.Cursor;
 import com.google.appengine.api.datastore.DatastoreService;
 import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
 import com.google.appengine.api.datastore.PreparedQuery;
+import com.google.appengine.api.datastore.PropertyProjection;
 import com.google.appengine.api.datastore.Query;
 import com.google.appengine.api.datastore.Query.SortDirection;
+import com.google.appengine.api.datastore.QueryResultList;
+import com.google.appengine.api.users.UserServiceFactory;
 import com.google.gson.Gson;
 import com.google.sps.data.Task;
+import com.google.sps.data.TaskLists;
+import com.google.sps.data.TaskPage;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -30,19 +38,67 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Servlet responsible for listing tasks. */
+/**
+ * Servlet responsible for listing the current user's tasks. Tasks are
+ * returned a page at a time: the optional limit parameter sets the page size
+ * and the cursor parameter continues from the nextCursor of a previous page.
+ */
 @WebServlet("/list-tasks")
 public class ListTasksServlet extends HttpServlet {
 
+  private static final int DEFAULT_LIMIT = 50;
+  private static final int MAX_LIMIT = 500;
+
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    Query query = new Query("Task").addSort("timestamp", SortDirection.DESCENDING);
+    Key listKey = TaskLists.getCurrentListKey();
+    if (listKey == null) {
+      // Tell the page where to send the user to sign in.
+      response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+      response.setContentType("text/plain");
+      response.getWriter().println(
+          UserServiceFactory.getUserService().createLoginURL("/index.html"));
+      return;
+    }
+
+    int limit = getLimit(request);
+    if (limit == -1) {
+      response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+      response.setContentType("text/plain");
+      response.getWriter().println("Please enter a limit between 1 and " + MAX_LIMIT + ".");
+      return;
+    }
+
+    FetchOptions fetchOptions = FetchOptions.Builder.withLimit(limit);
+    String cursorString = request.getParameter("cursor");
+    if (cursorString != null && !cursorString.isEmpty()) {
+      try {
+        fetchOptions.startCursor(Cursor.fromWebSafeString(cursorString));
+      } catch (IllegalArgumentException e) {
+        System.err.println("Could not decode cursor: " + cursorString);
+        response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        response.setContentType("text/plain");
+        response.getWriter().println("Please pass back a cursor returned by this server.");
+        return;
+      }
+    }
+
+    // Projecting onto the two listed properties lets Datastore answer the
+    // query from the index alone instead of loading every full entity. The
+    // ancestor filter keeps the scan inside the user's own list.
+    Query query =
+        new Query("Task")
+            .setAncestor(listKey)
+            .addProjection(new PropertyProjection("title", String.class))
+            .addProjection(new PropertyProjection("timestamp", Long.class))
+            .addSort("timestamp", SortDirection.DESCENDING);
 
     DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
     PreparedQuery results = datastore.prepare(query);
+    QueryResultList<Entity> entities = results.asQueryResultList(fetchOptions);
 
     List<Task> tasks = new ArrayList<>();
-    for (Entity entity : results.asIterable()) {
+    for (Entity entity : entities) {
       long id = entity.getKey().getId();
       String title = (String) entity.getProperty("title");
       long timestamp = (long) entity.getProperty("timestamp");
@@ -51,9 +107,37 @@ public class ListTasksServlet extends HttpServlet {
       tasks.add(task);
     }
 
+    // A short page means there is nothing left to fetch.
+    String nextCursor = null;
+    if (tasks.size() == limit) {
+      nextCursor = entities.getCursor().toWebSafeString();
+    }
+
     Gson gson = new Gson();
 
     response.setContentType("application/json;");
-    response.getWriter().println(gson.toJson(tasks));
+    response.getWriter().println(gson.toJson(new TaskPage(tasks, nextCursor)));
+  }
+
+  /** Returns the requested page size, or -1 if the limit was invalid. */
+  private int getLimit(HttpServletRequest request) {
+    String limitString = request.getParameter("limit");
+    if (limitString == null || limitString.isEmpty()) {
+      return DEFAULT_LIMIT;
+    }
+
+    int limit;
+    try {
+      limit = Integer.parseInt(limitString);
+    } catch (NumberFormatException e) {
+      System.err.println("Could not convert to int: " + limitString);
+      return -1;
+    }
+
+    if (limit < 1 || limit > MAX_LIMIT) {
+      System.err.println("Limit out of range: " + limitString);
+      return -1;
+    }
+    return limit;
   }
 }
@@ -17,6 +17,9 @@ package com.google.sps.servlets;
 import com.google.appengine.api.datastore.DatastoreService;
 import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.users.UserServiceFactory;
+import com.google.sps.data.TaskLists;
 import java.io.IOException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -29,10 +32,16 @@ public class NewTaskServlet extends HttpServlet {
 
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    Key listKey = TaskLists.getCurrentListKey();
+    if (listKey == null) {
+      response.sendRedirect(UserServiceFactory.getUserService().createLoginURL("/index.html"));
+      return;
+    }
+
     String title = request.getParameter("title");
     long timestamp = System.currentTimeMillis();
 
-    Entity taskEntity = new Entity("Task");
+    Entity taskEntity = new Entity("Task", listKey);
     taskEntity.setProperty("title", title);
     taskEntity.setProperty("timestamp", timestamp);
 
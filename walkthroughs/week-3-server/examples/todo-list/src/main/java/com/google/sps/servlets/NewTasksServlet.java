@@ -0,0 +1,81 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.gson.Gson;
+import com.google.sps.data.Task;
+import com.google.sps.data.TaskBatch;
+import com.google.sps.data.TaskLists;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet responsible for creating many tasks at once. Expects a JSON body of
+ * the form {"titles": ["first", "second"]} and stores every task with a single
+ * batch put.
+ */
+@WebServlet("/new-tasks")
+public class NewTasksServlet extends HttpServlet {
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    Key listKey = TaskLists.getCurrentListKey();
+    if (listKey == null) {
+      response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+      return;
+    }
+
+    TaskBatch batch = TaskBatch.parse(request.getReader());
+    if (batch == null) {
+      response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+      response.setContentType("text/plain");
+      response.getWriter().println(
+          "Please send a JSON object with up to " + TaskBatch.MAX_SIZE + " titles.");
+      return;
+    }
+
+    long timestamp = System.currentTimeMillis();
+    List<Entity> taskEntities = new ArrayList<>();
+    for (String title : batch.getTitles()) {
+      Entity taskEntity = new Entity("Task", listKey);
+      taskEntity.setProperty("title", title);
+      taskEntity.setProperty("timestamp", timestamp);
+      taskEntities.add(taskEntity);
+    }
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    datastore.put(taskEntities);
+
+    // The put assigns ids in place, so the created tasks can be echoed back.
+    List<Task> tasks = new ArrayList<>();
+    for (Entity entity : taskEntities) {
+      tasks.add(new Task(entity.getKey().getId(), (String) entity.getProperty("title"), timestamp));
+    }
+
+    Gson gson = new Gson();
+
+    response.setContentType("application/json;");
+    response.getWriter().println(gson.toJson(tasks));
+  }
+}
@@ -12,13 +12,41 @@
 // See the License for the specific language governing permissions and
 // limitations under the License.
 
-/** Fetches tasks from the server and adds them to the DOM. */
+/** The cursor for the next page of tasks, or null once every task is shown. */
+let nextCursor = null;
+
+/** Fetches the first page of tasks from the server and adds them to the DOM. */
 function loadTasks() {
-  fetch('/list-tasks').then(response => response.json()).then((tasks) => {
+  fetchTasks('/list-tasks');
+}
+
+/** Fetches the next page of tasks and appends them to the list. */
+function loadMoreTasks() {
+  fetchTasks('/list-tasks?cursor=' + encodeURIComponent(nextCursor));
+}
+
+/** Fetches a page of tasks from the given URL and adds them to the DOM. */
+function fetchTasks(url) {
+  fetch(url).then((response) => {
+    if (response.status === 401) {
+      // Todo lists belong to a user, so send visitors to the login page.
+      response.text().then((loginUrl) => {
+        window.location.href = loginUrl.trim();
+      });
+      return null;
+    }
+    return response.json();
+  }).then((page) => {
+    if (page === null) {
+      return;
+    }
     const taskListElement = document.getElementById('task-list');
-    tasks.forEach((task) => {
+    page.tasks.forEach((task) => {
       taskListElement.appendChild(createTaskElement(task));
-    })
+    });
+
+    nextCursor = page.nextCursor || null;
+    document.getElementById('load-more').hidden = nextCursor === null;
   });
 }
 
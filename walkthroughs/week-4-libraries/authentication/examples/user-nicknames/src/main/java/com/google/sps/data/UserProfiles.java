@@ -0,0 +1,95 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.KeyFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Looks up users' nicknames, keeping recently used ones in memory so that page views don't each
+ * need a Datastore read. UserInfo entities are keyed by user ID, so a miss is a single get by key
+ * rather than a query.
+ *
+ * <p>Each App Engine instance has its own cache. NicknameServlet invalidates the entry on the
+ * instance that handled the change, and entries expire after a minute so other instances catch up.
+ */
+public final class UserProfiles {
+
+  /** How many users' nicknames to remember. */
+  private static final int MAX_ENTRIES = 1000;
+
+  /** How long a nickname changed on another instance can still be shown here. */
+  private static final long TTL_MILLIS = 60 * 1000;
+
+  private static final UserProfiles instance = new UserProfiles();
+
+  private final Map<String, CachedNickname> nicknames =
+      new LinkedHashMap<String, CachedNickname>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedNickname> eldest) {
+          return size() > MAX_ENTRIES;
+        }
+      };
+
+  private static final class CachedNickname {
+    private final String nickname;
+    private final long expiresMillis;
+
+    private CachedNickname(String nickname, long expiresMillis) {
+      this.nickname = nickname;
+      this.expiresMillis = expiresMillis;
+    }
+  }
+
+  private UserProfiles() {}
+
+  public static UserProfiles getInstance() {
+    return instance;
+  }
+
+  /** Returns the nickname of the user with id, or null if the user has not set a nickname. */
+  public String getNickname(String id) {
+    synchronized (this) {
+      CachedNickname cached = nicknames.get(id);
+      if (cached != null && cached.expiresMillis > System.currentTimeMillis()) {
+        return cached.nickname;
+      }
+    }
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Entity entity;
+    try {
+      entity = datastore.get(KeyFactory.createKey("UserInfo", id));
+    } catch (EntityNotFoundException e) {
+      // Not cached, so the nickname shows up as soon as the user sets one.
+      return null;
+    }
+    String nickname = (String) entity.getProperty("nickname");
+    synchronized (this) {
+      nicknames.put(id, new CachedNickname(nickname, System.currentTimeMillis() + TTL_MILLIS));
+    }
+    return nickname;
+  }
+
+  /** Forgets the cached nickname of the user with id, after it has been changed. */
+  public synchronized void invalidate(String id) {
+    nicknames.remove(id);
+  }
+}
@@ -17,10 +17,9 @@ package com.google.sps.servlets;
 import com.google.appengine.api.datastore.DatastoreService;
 import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.PreparedQuery;
-import com.google.appengine.api.datastore.Query;
 import com.google.appengine.api.users.UserService;
 import com.google.appengine.api.users.UserServiceFactory;
+import com.google.sps.data.UserProfiles;
 import java.io.IOException;
 import java.io.PrintWriter;
 import javax.servlet.annotation.WebServlet;
@@ -69,6 +68,7 @@ public class NicknameServlet extends HttpServlet {
     entity.setProperty("nickname", nickname);
     // The put() function automatically inserts new data or updates existing data based on ID
     datastore.put(entity);
+    UserProfiles.getInstance().invalidate(id);
 
     response.sendRedirect("/home");
   }
@@ -77,16 +77,10 @@ public class NicknameServlet extends HttpServlet {
    * Returns the nickname of the user with id, or empty String if the user has not set a nickname.
    */
   private String getUserNickname(String id) {
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    Query query =
-        new Query("UserInfo")
-            .setFilter(new Query.FilterPredicate("id", Query.FilterOperator.EQUAL, id));
-    PreparedQuery results = datastore.prepare(query);
-    Entity entity = results.asSingleEntity();
-    if (entity == null) {
+    String nickname = UserProfiles.getInstance().getNickname(id);
+    if (nickname == null) {
       return "";
     }
-    String nickname = (String) entity.getProperty("nickname");
     return nickname;
   }
 }
@@ -24,8 +24,10 @@ import com.google.appengine.api.images.ImagesServiceFactory;
 import com.google.appengine.api.images.ServingUrlOptions;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLEncoder;
 import java.util.List;
 import java.util.Map;
 import javax.servlet.annotation.WebServlet;
@@ -50,17 +52,37 @@ public class FormHandlerServlet extends HttpServlet {
     // Get the URL of the image that the user uploaded to Blobstore.
     String imageUrl = getUploadedFileUrl(request, "image");
 
+    // Show a resized copy of the image, which links to the full upload.
+    String previewUrl = imageUrl == null ? null : getResizedImageUrl(request, "image", "medium");
+
     // Output some HTML that shows the data the user entered.
     // A real codebase would probably store these in Datastore.
     PrintWriter out = response.getWriter();
     out.println("<p>Here's the image you uploaded:</p>");
     out.println("<a href=\"" + imageUrl + "\">");
-    out.println("<img src=\"" + imageUrl + "\" />");
+    out.println("<img src=\"" + previewUrl + "\" />");
     out.println("</a>");
     out.println("<p>Here's the text you entered:</p>");
     out.println(message);
   }
 
+  /**
+   * Returns a URL that points to a resized copy of the uploaded image, served by
+   * ResizedImageServlet, or null if the user didn't upload a file.
+   */
+  private String getResizedImageUrl(
+      HttpServletRequest request, String formInputElementName, String size)
+      throws UnsupportedEncodingException {
+    BlobstoreService blobstoreService = BlobstoreServiceFactory.getBlobstoreService();
+    Map<String, List<BlobKey>> blobs = blobstoreService.getUploads(request);
+    List<BlobKey> blobKeys = blobs.get("image");
+    if (blobKeys == null || blobKeys.isEmpty()) {
+      return null;
+    }
+    String blobKey = URLEncoder.encode(blobKeys.get(0).getKeyString(), "UTF-8");
+    return "/resized-image?blob-key=" + blobKey + "&size=" + size;
+  }
+
   /** Returns a URL that points to the uploaded file, or null if the user didn't upload a file. */
   private String getUploadedFileUrl(HttpServletRequest request, String formInputElementName) {
     BlobstoreService blobstoreService = BlobstoreServiceFactory.getBlobstoreService();
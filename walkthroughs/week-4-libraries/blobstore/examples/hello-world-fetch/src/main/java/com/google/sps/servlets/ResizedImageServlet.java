@@ -0,0 +1,202 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.blobstore.BlobInfo;
+import com.google.appengine.api.blobstore.BlobInfoFactory;
+import com.google.appengine.api.blobstore.BlobKey;
+import com.google.appengine.api.blobstore.BlobstoreService;
+import com.google.appengine.api.blobstore.BlobstoreServiceFactory;
+import com.google.sps.data.ImageResizer;
+import com.google.sps.data.ImageVariant;
+import com.google.sps.data.ImageVariantCache;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves a smaller copy of an uploaded image, such as /resized-image?blob-key=abc&size=thumbnail,
+ * so pages don't have to download the full upload just to show a preview. Resized images are
+ * made the first time they are asked for and kept on local disk.
+ */
+@WebServlet("/resized-image")
+public class ResizedImageServlet extends HttpServlet {
+
+  /**
+   * App Engine only lets apps write to /tmp, which is held in the instance's memory, so the cache
+   * is kept small.
+   */
+  private static final long MAX_CACHE_BYTES = 64L * 1024 * 1024;
+
+  /** How many blob keys to remember the content hash of. */
+  private static final int MAX_HASHES = 10000;
+
+  /** Blob keys never point to different bytes, so browsers can keep the images for a year. */
+  private static final String CACHE_CONTROL = "public, max-age=31536000";
+
+  private ImageVariantCache cache;
+
+  /** Content hashes of uploads, so that cached images can be found without fetching the blob. */
+  private final Map<String, String> hashes =
+      Collections.synchronizedMap(
+          new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+              return size() > MAX_HASHES;
+            }
+          });
+
+  @Override
+  public void init() throws ServletException {
+    Path root = Paths.get(System.getProperty("java.io.tmpdir"), "resized-images");
+    try {
+      cache = new ImageVariantCache(root, MAX_CACHE_BYTES);
+    } catch (IOException e) {
+      throw new ServletException("Could not open the resized image cache in " + root, e);
+    }
+  }
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String blobKeyString = request.getParameter("blob-key");
+    ImageVariant variant = ImageVariant.fromName(request.getParameter("size"));
+    if (blobKeyString == null || blobKeyString.isEmpty() || variant == null) {
+      response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+      response.setContentType("text/plain");
+      response.getWriter().println("Expected blob-key and a size of thumbnail, medium or large.");
+      return;
+    }
+
+    String hash = hashes.get(blobKeyString);
+    if (hash != null && serveCached(request, response, hash, variant)) {
+      return;
+    }
+
+    byte[] original = fetchBlob(new BlobKey(blobKeyString));
+    if (original == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+    hash = sha256(original);
+    hashes.put(blobKeyString, hash);
+    // The same image may have been uploaded before under a different blob key.
+    if (serveCached(request, response, hash, variant)) {
+      return;
+    }
+
+    byte[] resized = ImageResizer.resize(original, variant);
+    if (resized == null) {
+      response.setStatus(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+      response.setContentType("text/plain");
+      response.getWriter().println("The uploaded file is not an image, or is too large to resize.");
+      return;
+    }
+    cache.put(hash, variant, resized);
+    setImageHeaders(response, hash, variant);
+    response.setContentLength(resized.length);
+    response.getOutputStream().write(resized);
+  }
+
+  /**
+   * Sends the cached image, or just a 304 if the browser already has it. Returns false if the
+   * image is not cached.
+   */
+  private boolean serveCached(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      String hash,
+      ImageVariant variant)
+      throws IOException {
+    Path path = cache.get(hash, variant);
+    if (path == null) {
+      return false;
+    }
+    if (etag(hash, variant).equals(request.getHeader("If-None-Match"))) {
+      setImageHeaders(response, hash, variant);
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return true;
+    }
+
+    byte[] bytes;
+    try {
+      bytes = Files.readAllBytes(path);
+    } catch (NoSuchFileException e) {
+      // Another request evicted the file after we found it.
+      return false;
+    }
+    setImageHeaders(response, hash, variant);
+    response.setContentLength(bytes.length);
+    response.getOutputStream().write(bytes);
+    return true;
+  }
+
+  private static void setImageHeaders(
+      HttpServletResponse response, String hash, ImageVariant variant) {
+    response.setContentType("image/jpeg");
+    response.setHeader("Cache-Control", CACHE_CONTROL);
+    response.setHeader("ETag", etag(hash, variant));
+  }
+
+  private static String etag(String hash, ImageVariant variant) {
+    return "\"" + hash + "-" + variant.name().toLowerCase(Locale.ROOT) + "\"";
+  }
+
+  /** Returns the contents of the blob, or null if there is no such blob. */
+  private static byte[] fetchBlob(BlobKey blobKey) {
+    BlobInfo blobInfo = new BlobInfoFactory().loadBlobInfo(blobKey);
+    if (blobInfo == null || blobInfo.getSize() == 0) {
+      return null;
+    }
+
+    BlobstoreService blobstoreService = BlobstoreServiceFactory.getBlobstoreService();
+    ByteArrayOutputStream outputBytes = new ByteArrayOutputStream((int) blobInfo.getSize());
+    long currentByteIndex = 0;
+    while (currentByteIndex < blobInfo.getSize()) {
+      // end index is inclusive, so we have to subtract 1 to get the right number of bytes
+      long endIndex =
+          Math.min(
+              currentByteIndex + BlobstoreService.MAX_BLOB_FETCH_SIZE, blobInfo.getSize()) - 1;
+      byte[] b = blobstoreService.fetchData(blobKey, currentByteIndex, endIndex);
+      outputBytes.write(b, 0, b.length);
+      currentByteIndex += b.length;
+    }
+    return outputBytes.toByteArray();
+  }
+
+  private static String sha256(byte[] bytes) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+      return String.format("%064x", new BigInteger(1, digest));
+    } catch (NoSuchAlgorithmException e) {
+      // Java SE requires every runtime to provide SHA-256, so this cannot happen.
+      throw new IllegalStateException(e);
+    }
+  }
+}
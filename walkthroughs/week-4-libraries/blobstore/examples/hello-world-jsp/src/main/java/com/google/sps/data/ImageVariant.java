@@ -0,0 +1,50 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+/** The resized versions of an uploaded image that pages can show instead of the full upload. */
+public enum ImageVariant {
+  THUMBNAIL(160, 0.7f),
+  MEDIUM(640, 0.8f),
+  LARGE(1280, 0.85f);
+
+  private final int maxDimension;
+  private final float quality;
+
+  ImageVariant(int maxDimension, float quality) {
+    this.maxDimension = maxDimension;
+    this.quality = quality;
+  }
+
+  /** Returns the longest the width or height of this variant can be, in pixels. */
+  public int getMaxDimension() {
+    return maxDimension;
+  }
+
+  /** Returns the JPEG quality this variant is compressed with, from 0 to 1. */
+  public float getQuality() {
+    return quality;
+  }
+
+  /** Returns the variant with the given name, such as "thumbnail", or null if there is none. */
+  public static ImageVariant fromName(String name) {
+    for (ImageVariant variant : values()) {
+      if (variant.name().equalsIgnoreCase(name)) {
+        return variant;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,253 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Stores files on local disk, named after the SHA-256 hash of their content so that uploading the
+ * same file twice only stores it once. Files live under root/ab/abcdef..., where "ab" is the first
+ * two characters of the hash, to keep directories small.
+ *
+ * <p>Content is hashed while it is copied to disk, so storing a file reads it exactly once and
+ * never holds more than a small buffer of it in memory.
+ *
+ * <p>Once the stored files take up more than the size limit, the least recently served or stored
+ * ones are deleted, so uploads can't fill the disk.
+ */
+public final class ContentStore {
+
+  /** How many bytes to hand the file channel at a time. */
+  private static final long TRANSFER_SIZE = 256 * 1024;
+
+  private final Path root;
+  private final long maxBytes;
+
+  /** Sizes of the stored files, least recently used first. */
+  private final LinkedHashMap<Path, Long> files = new LinkedHashMap<>(16, 0.75f, true);
+
+  private long totalBytes;
+
+  /** Thrown when a file is larger than the store was asked to accept. */
+  public static final class TooLargeException extends IOException {
+    public TooLargeException(long maxBytes) {
+      super("File is larger than " + maxBytes + " bytes");
+    }
+  }
+
+  /** A file in the store. */
+  public static final class StoredFile {
+    private final String hash;
+    private final long size;
+
+    private StoredFile(String hash, long size) {
+      this.hash = hash;
+      this.size = size;
+    }
+
+    /** Returns the SHA-256 hash of the file as 64 hex characters, which also names the file. */
+    public String getHash() {
+      return hash;
+    }
+
+    public long getSize() {
+      return size;
+    }
+  }
+
+  /**
+   * Opens the store in the given directory. Files left there by an earlier instance are kept and
+   * count as used in the order they were last modified; half-written uploads are deleted.
+   */
+  public ContentStore(Path root, long maxBytes) throws IOException {
+    this.root = root;
+    this.maxBytes = maxBytes;
+    Files.createDirectories(root);
+
+    List<Path> existing = new ArrayList<>();
+    try (Stream<Path> paths = Files.walk(root)) {
+      paths.filter(Files::isRegularFile).forEach(existing::add);
+    }
+    existing.sort(Comparator.comparingLong(ContentStore::lastModified));
+    synchronized (this) {
+      for (Path path : existing) {
+        if (path.getParent().equals(root)) {
+          // Only temporary files sit directly in the root.
+          Files.deleteIfExists(path);
+          continue;
+        }
+        long size = Files.size(path);
+        files.put(path, size);
+        totalBytes += size;
+      }
+      evict();
+    }
+  }
+
+  /**
+   * Copies the stream into the store and returns the stored file, or returns null without writing
+   * anything if the stream is empty. Throws TooLargeException, and keeps nothing, as soon as more
+   * than maxBytes have been read.
+   */
+  public StoredFile store(InputStream content, long maxBytes) throws IOException {
+    PushbackInputStream input = new PushbackInputStream(content, 1);
+    int first = input.read();
+    if (first == -1) {
+      return null;
+    }
+    input.unread(first);
+
+    MessageDigest digest = newDigest();
+    ReadableByteChannel source =
+        Channels.newChannel(new DigestInputStream(new LimitedInputStream(input, maxBytes), digest));
+    Path temp = Files.createTempFile(root, "upload", ".tmp");
+    try {
+      long size = 0;
+      try (FileChannel file = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        long transferred;
+        while ((transferred = file.transferFrom(source, size, TRANSFER_SIZE)) > 0) {
+          size += transferred;
+        }
+      }
+
+      String hash = String.format("%064x", new BigInteger(1, digest.digest()));
+      Path path = getPath(hash);
+      Files.createDirectories(path.getParent());
+      // If this file was uploaded before, the old copy has the same content, so replacing it is
+      // harmless.
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      synchronized (this) {
+        Long previous = files.put(path, size);
+        totalBytes += size - (previous == null ? 0 : previous);
+        evict();
+      }
+      return new StoredFile(hash, size);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Returns the file with the given hash, or null if the hash is malformed or there is no such
+   * file. The file may still be evicted by a later upload, so callers should expect it to vanish.
+   */
+  public synchronized Path get(String hash) {
+    if (hash == null || !hash.matches("[0-9a-f]{64}")) {
+      return null;
+    }
+    Path path = getPath(hash);
+    // Looking the path up also marks it as recently used.
+    return files.get(path) == null ? null : path;
+  }
+
+  /** Returns the number of bytes the stored files take up. */
+  public synchronized long getTotalBytes() {
+    return totalBytes;
+  }
+
+  private Path getPath(String hash) {
+    return root.resolve(hash.substring(0, 2)).resolve(hash);
+  }
+
+  /** Deletes the least recently used files until the store fits in its limit. */
+  private void evict() {
+    Iterator<Map.Entry<Path, Long>> iterator = files.entrySet().iterator();
+    while (totalBytes > maxBytes && iterator.hasNext()) {
+      Map.Entry<Path, Long> eldest = iterator.next();
+      try {
+        Files.deleteIfExists(eldest.getKey());
+      } catch (IOException e) {
+        System.err.println("Could not delete stored file " + eldest.getKey() + ": " + e);
+      }
+      totalBytes -= eldest.getValue();
+      iterator.remove();
+    }
+  }
+
+  private static long lastModified(Path path) {
+    try {
+      return Files.readAttributes(path, BasicFileAttributes.class).lastModifiedTime().toMillis();
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // The algorithm is in the list every Java platform must implement.
+      throw new AssertionError(e);
+    }
+  }
+
+  /** Fails with TooLargeException once more than the given number of bytes have been read. */
+  public static final class LimitedInputStream extends FilterInputStream {
+    private final long maxBytes;
+    private long count;
+
+    public LimitedInputStream(InputStream in, long maxBytes) {
+      super(in);
+      this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b != -1) {
+        count(1);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = super.read(b, off, len);
+      if (read > 0) {
+        count(read);
+      }
+      return read;
+    }
+
+    private void count(int read) throws TooLargeException {
+      count += read;
+      if (count > maxBytes) {
+        throw new TooLargeException(maxBytes);
+      }
+    }
+  }
+}
@@ -0,0 +1,137 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/** Scales uploaded images down and recompresses them as JPEG. */
+public final class ImageResizer {
+
+  /**
+   * Images with more pixels than this are refused before they are decoded. A small upload can
+   * claim to be tens of thousands of pixels wide, and decoding it would take far more memory than
+   * the instance has.
+   */
+  public static final long MAX_PIXELS = 50_000_000;
+
+  private ImageResizer() {}
+
+  /**
+   * Returns the image scaled to fit the variant and encoded as JPEG, or null if the bytes are not
+   * an image that ImageIO can read or the image has more than {@link #MAX_PIXELS} pixels. Images
+   * are never scaled up, but are always recompressed.
+   */
+  public static byte[] resize(byte[] original, ImageVariant variant) throws IOException {
+    BufferedImage image = read(original, variant.getMaxDimension());
+    if (image == null) {
+      return null;
+    }
+
+    double scale =
+        Math.min(
+            1.0,
+            (double) variant.getMaxDimension() / Math.max(image.getWidth(), image.getHeight()));
+    int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+    int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+    // Halve the image until it is close to the target size; a single bilinear step from a much
+    // larger image skips most of the source pixels and looks grainy.
+    BufferedImage current = image;
+    while (current.getWidth() / 2 >= width && current.getHeight() / 2 >= height) {
+      current = draw(current, current.getWidth() / 2, current.getHeight() / 2);
+    }
+    BufferedImage resized = draw(current, width, height);
+    return encodeJpeg(resized, variant.getQuality());
+  }
+
+  /**
+   * Decodes the image, or returns null if it can't be read or is too large. The dimensions are
+   * read from the header first. Large images are decoded with subsampling, so only about twice as
+   * many pixels as the variant needs are kept in memory; the halving steps in {@link #resize}
+   * smooth out the rest.
+   */
+  private static BufferedImage read(byte[] original, int maxDimension) throws IOException {
+    try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(original))) {
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+      if (!readers.hasNext()) {
+        return null;
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(in, true, true);
+        int sourceWidth = reader.getWidth(0);
+        int sourceHeight = reader.getHeight(0);
+        if ((long) sourceWidth * sourceHeight > MAX_PIXELS) {
+          System.err.println(
+              "Image too large to resize: " + sourceWidth + "x" + sourceHeight + " pixels");
+          return null;
+        }
+
+        ImageReadParam param = reader.getDefaultReadParam();
+        int period = Math.max(1, Math.max(sourceWidth, sourceHeight) / (2 * maxDimension));
+        param.setSourceSubsampling(period, period, 0, 0);
+        return reader.read(0, param);
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  /** Draws the image at the given size onto a white, opaque canvas, as JPEG has no alpha. */
+  private static BufferedImage draw(BufferedImage source, int width, int height) {
+    BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D graphics = target.createGraphics();
+    try {
+      graphics.setRenderingHint(
+          RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+      graphics.drawImage(source, 0, 0, width, height, Color.WHITE, null);
+    } finally {
+      graphics.dispose();
+    }
+    return target;
+  }
+
+  private static byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+    ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+      writer.setOutput(out);
+      ImageWriteParam param = writer.getDefaultWriteParam();
+      param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+      param.setCompressionQuality(quality);
+      param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+      writer.write(null, new IIOImage(image, null, null), param);
+    } finally {
+      writer.dispose();
+    }
+    return bytes.toByteArray();
+  }
+}
@@ -0,0 +1,134 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Stores resized images on local disk, named after a hash of the original image so that the same
+ * upload is only resized once. Files live under root/ab/abcdef...-thumbnail.jpg, where "ab" is the
+ * first two characters of the hash, to keep directories small. Once the files take up more than
+ * the size limit, the least recently used ones are deleted.
+ */
+public final class ImageVariantCache {
+
+  private final Path root;
+  private final long maxBytes;
+
+  /** Sizes of the cached files, least recently used first. */
+  private final LinkedHashMap<Path, Long> files = new LinkedHashMap<>(16, 0.75f, true);
+
+  private long totalBytes;
+
+  /**
+   * Opens the cache in the given directory, picking up files left there by an earlier instance of
+   * this cache. Files are treated as used in the order they were last modified.
+   */
+  public ImageVariantCache(Path root, long maxBytes) throws IOException {
+    this.root = root;
+    this.maxBytes = maxBytes;
+    Files.createDirectories(root);
+
+    List<Path> existing = new ArrayList<>();
+    try (Stream<Path> paths = Files.walk(root)) {
+      paths.filter(Files::isRegularFile).forEach(existing::add);
+    }
+    existing.sort(Comparator.comparingLong(ImageVariantCache::lastModified));
+    synchronized (this) {
+      for (Path path : existing) {
+        long size = Files.size(path);
+        files.put(path, size);
+        totalBytes += size;
+      }
+      evict();
+    }
+  }
+
+  /** Returns the cached file for the variant of the image with the given hash, or null. */
+  public synchronized Path get(String contentHash, ImageVariant variant) {
+    Path path = pathFor(contentHash, variant);
+    // Looking the path up also marks it as recently used.
+    if (files.get(path) == null) {
+      return null;
+    }
+    return path;
+  }
+
+  /** Stores the variant of the image with the given hash and returns its file. */
+  public Path put(String contentHash, ImageVariant variant, byte[] bytes) throws IOException {
+    Path path = pathFor(contentHash, variant);
+    Files.createDirectories(path.getParent());
+    // Write to a temporary file first so readers never see a partly written image.
+    Path temp = Files.createTempFile(path.getParent(), "variant", ".tmp");
+    try {
+      Files.write(temp, bytes);
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+
+    synchronized (this) {
+      Long previous = files.put(path, (long) bytes.length);
+      totalBytes += bytes.length - (previous == null ? 0 : previous);
+      evict();
+    }
+    return path;
+  }
+
+  /** Returns the number of bytes the cached files take up. */
+  public synchronized long getTotalBytes() {
+    return totalBytes;
+  }
+
+  private Path pathFor(String contentHash, ImageVariant variant) {
+    String fileName = contentHash + "-" + variant.name().toLowerCase(Locale.ROOT) + ".jpg";
+    return root.resolve(contentHash.substring(0, 2)).resolve(fileName);
+  }
+
+  /** Deletes the least recently used files until the cache fits in its limit. */
+  private void evict() {
+    Iterator<Map.Entry<Path, Long>> iterator = files.entrySet().iterator();
+    while (totalBytes > maxBytes && iterator.hasNext()) {
+      Map.Entry<Path, Long> eldest = iterator.next();
+      try {
+        Files.deleteIfExists(eldest.getKey());
+      } catch (IOException e) {
+        System.err.println("Could not delete cached image " + eldest.getKey() + ": " + e);
+      }
+      totalBytes -= eldest.getValue();
+      iterator.remove();
+    }
+  }
+
+  private static long lastModified(Path path) {
+    try {
+      return Files.readAttributes(path, BasicFileAttributes.class).lastModifiedTime().toMillis();
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+}
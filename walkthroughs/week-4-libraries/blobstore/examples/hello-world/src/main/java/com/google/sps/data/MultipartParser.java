@@ -0,0 +1,273 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads the parts of a multipart/form-data request body one at a time, straight from the request
+ * stream. Unlike request.getParts(), nothing is buffered in memory or written to disk by the
+ * server, so a file part can be streamed wherever it needs to go. Each part must be read before
+ * moving on to the next one; calling {@link #next()} skips whatever is left of the current part.
+ */
+public final class MultipartParser {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** Longest header line we accept, so a bad request can't make us buffer without limit. */
+  private static final int MAX_HEADER_LINE = 8 * 1024;
+
+  private static final int MAX_HEADERS = 16;
+
+  private final InputStream in;
+
+  /** The bytes that separate parts: CRLF, two dashes and the boundary. */
+  private final byte[] delimiter;
+
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private int position;
+  private int limit;
+  private boolean endOfInput;
+  private boolean finished;
+  private PartInputStream current;
+
+  /** One part of the body, whose content can be read from {@link #getInputStream()}. */
+  public static final class Part {
+    private final Map<String, String> headers;
+    private final String name;
+    private final String fileName;
+    private final InputStream content;
+
+    private Part(Map<String, String> headers, InputStream content) {
+      this.headers = headers;
+      this.content = content;
+      String disposition = headers.get("content-disposition");
+      this.name = getParameter(disposition, "name");
+      this.fileName = getParameter(disposition, "filename");
+    }
+
+    /** Returns the name of the form input this part came from. */
+    public String getName() {
+      return name;
+    }
+
+    /** Returns the name of the uploaded file, or null if this part is not a file. */
+    public String getFileName() {
+      return fileName;
+    }
+
+    /** Returns the content type the browser sent for this part, or null. */
+    public String getContentType() {
+      return headers.get("content-type");
+    }
+
+    public InputStream getInputStream() {
+      return content;
+    }
+  }
+
+  /**
+   * Creates a parser for a body with the given boundary, which comes from the request's
+   * Content-Type header.
+   */
+  public MultipartParser(InputStream in, String boundary) {
+    this.in = in;
+    this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+    // The first boundary is not preceded by a line break, so pretend it is; this lets the
+    // preamble be skipped like the content of any other part.
+    buffer[0] = '\r';
+    buffer[1] = '\n';
+    limit = 2;
+    current = new PartInputStream();
+  }
+
+  /**
+   * Returns the boundary from a multipart/form-data Content-Type header, or null if the header is
+   * missing or is for some other kind of body.
+   */
+  public static String getBoundary(String contentType) {
+    if (contentType == null
+        || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/form-data")) {
+      return null;
+    }
+    String boundary = getParameter(contentType, "boundary");
+    if (boundary == null || boundary.isEmpty() || boundary.length() > 70) {
+      return null;
+    }
+    return boundary;
+  }
+
+  /** Returns the next part, or null once the closing boundary has been read. */
+  public Part next() throws IOException {
+    if (finished) {
+      return null;
+    }
+    drain(current);
+
+    // After a boundary comes either "--" for the end of the body, or the end of the line.
+    fill(2);
+    if (limit - position >= 2 && buffer[position] == '-' && buffer[position + 1] == '-') {
+      finished = true;
+      return null;
+    }
+    readLine();
+
+    Map<String, String> headers = new LinkedHashMap<>();
+    String line;
+    while (!(line = readLine()).isEmpty()) {
+      int colon = line.indexOf(':');
+      if (colon <= 0 || headers.size() == MAX_HEADERS) {
+        throw new IOException("Malformed multipart header: " + line);
+      }
+      headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+    }
+    current = new PartInputStream();
+    return new Part(headers, current);
+  }
+
+  private static void drain(InputStream part) throws IOException {
+    byte[] skipped = new byte[BUFFER_SIZE];
+    while (part.read(skipped) != -1) {}
+  }
+
+  /** Reads up to the next CRLF and returns the line without it. */
+  private String readLine() throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    while (true) {
+      fill(2);
+      if (limit - position < 2) {
+        throw new IOException("Unexpected end of multipart body");
+      }
+      if (buffer[position] == '\r' && buffer[position + 1] == '\n') {
+        position += 2;
+        return new String(line.toByteArray(), StandardCharsets.UTF_8);
+      }
+      line.write(buffer[position++]);
+      if (line.size() > MAX_HEADER_LINE) {
+        throw new IOException("Multipart header line is too long");
+      }
+    }
+  }
+
+  /**
+   * Makes sure at least the given number of bytes are buffered, unless the input ends first.
+   * Unread bytes are moved to the start of the buffer to make room.
+   */
+  private void fill(int needed) throws IOException {
+    if (limit - position >= needed || endOfInput) {
+      return;
+    }
+    System.arraycopy(buffer, position, buffer, 0, limit - position);
+    limit -= position;
+    position = 0;
+    while (limit < needed) {
+      int read = in.read(buffer, limit, buffer.length - limit);
+      if (read == -1) {
+        endOfInput = true;
+        return;
+      }
+      limit += read;
+    }
+  }
+
+  /**
+   * Returns the index of the next delimiter that ends before the given index, or -1 if there is
+   * none.
+   */
+  private int findDelimiter(int end) {
+    int last = end - delimiter.length;
+    outer:
+    for (int i = position; i <= last; i++) {
+      for (int j = 0; j < delimiter.length; j++) {
+        if (buffer[i + j] != delimiter[j]) {
+          continue outer;
+        }
+      }
+      return i;
+    }
+    return -1;
+  }
+
+  /** Reads the content of one part, stopping at the delimiter that follows it. */
+  private final class PartInputStream extends InputStream {
+    private boolean done;
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (done) {
+        return -1;
+      }
+      if (len == 0) {
+        return 0;
+      }
+      // Keep a full delimiter's worth of bytes buffered, so a delimiter split across two reads
+      // from the request is still found.
+      fill(Math.min(delimiter.length + len, buffer.length));
+      // Only look as far as this read could return, so large buffers aren't scanned repeatedly.
+      int windowEnd = Math.min(limit, position + len + delimiter.length);
+      int end = findDelimiter(windowEnd);
+      if (end == position) {
+        position += delimiter.length;
+        done = true;
+        return -1;
+      }
+
+      int available;
+      if (end != -1) {
+        available = end - position;
+      } else if (endOfInput && windowEnd == limit) {
+        throw new IOException("Unexpected end of multipart body");
+      } else {
+        // The last few bytes might be the start of a delimiter, so hold them back.
+        available = windowEnd - position - (delimiter.length - 1);
+      }
+      int count = Math.min(len, available);
+      System.arraycopy(buffer, position, b, off, count);
+      position += count;
+      return count;
+    }
+  }
+
+  /** Returns a parameter such as name="image" from a header value, or null if it's missing. */
+  private static String getParameter(String headerValue, String parameter) {
+    if (headerValue == null) {
+      return null;
+    }
+    for (String field : headerValue.split(";")) {
+      int equals = field.indexOf('=');
+      if (equals == -1 || !field.substring(0, equals).trim().equalsIgnoreCase(parameter)) {
+        continue;
+      }
+      String value = field.substring(equals + 1).trim();
+      if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+        value = value.substring(1, value.length() - 1);
+      }
+      return value;
+    }
+    return null;
+  }
+}
@@ -61,5 +61,15 @@ public class HomeServlet extends HttpServlet {
 
     out.println("<button>Submit</button>");
     out.println("</form>");
+
+    // The same form, but uploaded straight to StreamingUploadServlet instead of Blobstore.
+    out.println("<p>Or upload without Blobstore:</p>");
+    out.println("<form method=\"POST\" enctype=\"multipart/form-data\" action=\"/stream-upload\">");
+    out.println("<textarea name=\"message\"></textarea>");
+    out.println("<br/>");
+    out.println("<input type=\"file\" name=\"image\">");
+    out.println("<br/><br/>");
+    out.println("<button>Submit</button>");
+    out.println("</form>");
   }
 }
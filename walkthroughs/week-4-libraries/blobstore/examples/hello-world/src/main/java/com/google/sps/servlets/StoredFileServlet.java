@@ -0,0 +1,110 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves files uploaded through StreamingUploadServlet, such as /stored-file?hash=abc. Only JPEG,
+ * PNG and GIF files are shown inline. Anything else is sent as a download, since an uploaded HTML
+ * or SVG file served from this origin could run script against it.
+ */
+@WebServlet("/stored-file")
+public class StoredFileServlet extends HttpServlet {
+
+  private static final byte[] JPEG_MAGIC = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+  private static final byte[] PNG_MAGIC = {
+    (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'
+  };
+  private static final byte[] GIF87_MAGIC = "GIF87a".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] GIF89_MAGIC = "GIF89a".getBytes(StandardCharsets.US_ASCII);
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String hash = request.getParameter("hash");
+    Path path = StreamingUploadServlet.getStore().get(hash);
+    if (path == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+
+    // A hash always names the same content, so browsers can keep the file for a year.
+    response.setHeader("Cache-Control", "public, max-age=31536000");
+    response.setHeader("ETag", "\"" + hash + "\"");
+    if (("\"" + hash + "\"").equals(request.getHeader("If-None-Match"))) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    try (FileChannel file = FileChannel.open(path)) {
+      String imageType = getImageType(file);
+      if (imageType != null) {
+        response.setContentType(imageType);
+      } else {
+        response.setContentType("application/octet-stream");
+        response.setHeader("Content-Disposition", "attachment");
+      }
+      response.setHeader("X-Content-Type-Options", "nosniff");
+
+      response.setContentLengthLong(file.size());
+      WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+      long position = 0;
+      while (position < file.size()) {
+        position += file.transferTo(position, file.size() - position, out);
+      }
+    } catch (NoSuchFileException e) {
+      // A newer upload pushed the file out of the store after we looked it up. Drop the caching
+      // headers so the 404 isn't kept for a year.
+      response.reset();
+      response.sendError(HttpServletResponse.SC_NOT_FOUND);
+    }
+  }
+
+  /**
+   * Returns the MIME type of the file if its first bytes mark it as a JPEG, PNG or GIF image, or
+   * null otherwise. The name the file was uploaded with is never trusted.
+   */
+  private static String getImageType(FileChannel file) throws IOException {
+    ByteBuffer head = ByteBuffer.allocate(PNG_MAGIC.length);
+    while (head.hasRemaining() && file.read(head, head.position()) > 0) {}
+    byte[] bytes = Arrays.copyOf(head.array(), head.position());
+
+    if (startsWith(bytes, JPEG_MAGIC)) {
+      return "image/jpeg";
+    } else if (startsWith(bytes, PNG_MAGIC)) {
+      return "image/png";
+    } else if (startsWith(bytes, GIF87_MAGIC) || startsWith(bytes, GIF89_MAGIC)) {
+      return "image/gif";
+    }
+    return null;
+  }
+
+  private static boolean startsWith(byte[] bytes, byte[] prefix) {
+    return bytes.length >= prefix.length
+        && Arrays.equals(Arrays.copyOf(bytes, prefix.length), prefix);
+  }
+}
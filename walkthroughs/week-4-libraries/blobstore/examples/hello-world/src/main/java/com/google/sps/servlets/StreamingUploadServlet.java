@@ -0,0 +1,167 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.data.ContentStore;
+import com.google.sps.data.ContentStore.LimitedInputStream;
+import com.google.sps.data.ContentStore.StoredFile;
+import com.google.sps.data.ContentStore.TooLargeException;
+import com.google.sps.data.MultipartParser;
+import com.google.sps.data.MultipartParser.Part;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Handles the same form as FormHandlerServlet, but receives the upload itself instead of going
+ * through Blobstore. The image is streamed from the request straight into a ContentStore on local
+ * disk, so the upload is never held in memory and there is no Blobstore metadata to fetch
+ * afterwards. Files are served back by StoredFileServlet.
+ *
+ * <p>On App Engine the only writable directory is /tmp, which belongs to a single instance and is
+ * lost when the instance shuts down. This is fine for trying things out, but a real app would
+ * stream to Cloud Storage instead.
+ */
+@WebServlet("/stream-upload")
+public class StreamingUploadServlet extends HttpServlet {
+
+  /** Largest image we accept. */
+  static final long MAX_FILE_BYTES = 10 * 1024 * 1024;
+
+  /** Largest request we accept: the image plus room for the message and multipart headers. */
+  private static final long MAX_REQUEST_BYTES = MAX_FILE_BYTES + 64 * 1024;
+
+  /** Longest message we accept, in bytes. */
+  private static final int MAX_MESSAGE_BYTES = 10 * 1024;
+
+  /**
+   * How much of /tmp the uploads may use before the least recently used ones are deleted. /tmp is
+   * held in the instance's memory, next to the resized image cache.
+   */
+  private static final long MAX_STORE_BYTES = 128L * 1024 * 1024;
+
+  private static ContentStore store;
+
+  /** Returns the store that uploads are saved to, which StoredFileServlet also reads from. */
+  static synchronized ContentStore getStore() throws IOException {
+    if (store == null) {
+      store =
+          new ContentStore(
+              Paths.get(System.getProperty("java.io.tmpdir"), "uploads"), MAX_STORE_BYTES);
+    }
+    return store;
+  }
+
+  @Override
+  public void init() throws ServletException {
+    try {
+      getStore();
+    } catch (IOException e) {
+      throw new ServletException("Could not open the upload store", e);
+    }
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String boundary = MultipartParser.getBoundary(request.getContentType());
+    if (boundary == null) {
+      sendError(
+          response, HttpServletResponse.SC_BAD_REQUEST, "Expected a multipart/form-data body.");
+      return;
+    }
+    // Turn away requests that are obviously too large before reading any of the body.
+    if (request.getContentLengthLong() > MAX_REQUEST_BYTES) {
+      response.setHeader("Connection", "close");
+      sendError(
+          response,
+          HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+          "Uploads can be at most " + MAX_FILE_BYTES + " bytes.");
+      return;
+    }
+
+    String message = null;
+    StoredFile image = null;
+    boolean emptyImage = false;
+    // The length check above misses chunked bodies, and the parser skips parts it doesn't
+    // need without limit, so the whole body is counted against the request limit as well.
+    InputStream body = new LimitedInputStream(request.getInputStream(), MAX_REQUEST_BYTES);
+    MultipartParser parser = new MultipartParser(body, boundary);
+    try {
+      Part part;
+      while ((part = parser.next()) != null) {
+        if ("message".equals(part.getName())) {
+          message = readMessage(part.getInputStream());
+        } else if ("image".equals(part.getName()) && image == null) {
+          image = getStore().store(part.getInputStream(), MAX_FILE_BYTES);
+          emptyImage = image == null;
+        }
+      }
+    } catch (TooLargeException e) {
+      response.setHeader("Connection", "close");
+      sendError(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, e.getMessage());
+      return;
+    } catch (IOException e) {
+      sendError(
+          response, HttpServletResponse.SC_BAD_REQUEST, "Malformed upload: " + e.getMessage());
+      return;
+    }
+
+    // User submitted form without selecting a file, so there's nothing to show.
+    if (image == null) {
+      String reason = emptyImage ? "The selected file is empty." : "Please select an image.";
+      sendError(response, HttpServletResponse.SC_BAD_REQUEST, reason);
+      return;
+    }
+
+    String imageUrl = "/stored-file?hash=" + image.getHash();
+    response.setContentType("text/html");
+    PrintWriter out = response.getWriter();
+    out.println("<p>Here's the image you uploaded:</p>");
+    out.println("<a href=\"" + imageUrl + "\">");
+    out.println("<img src=\"" + imageUrl + "\" />");
+    out.println("</a>");
+    out.println("<p>Here's the text you entered:</p>");
+    out.println(message);
+  }
+
+  /** Reads the message field as UTF-8, failing if it is longer than we allow. */
+  private static String readMessage(InputStream in) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      bytes.write(buffer, 0, read);
+      if (bytes.size() > MAX_MESSAGE_BYTES) {
+        throw new TooLargeException(MAX_MESSAGE_BYTES);
+      }
+    }
+    return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private static void sendError(HttpServletResponse response, int status, String message)
+      throws IOException {
+    response.setStatus(status);
+    response.setContentType("text/plain");
+    response.getWriter().println(message);
+  }
+}
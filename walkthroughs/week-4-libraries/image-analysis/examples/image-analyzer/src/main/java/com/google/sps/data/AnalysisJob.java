@@ -0,0 +1,81 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.cloud.vision.v1.EntityAnnotation;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The analysis of one uploaded image, as the status and event endpoints send it to the page as
+ * JSON. Jobs are read from the Datastore entities that {@link AnalysisJobs} keeps them in.
+ */
+public final class AnalysisJob {
+
+  /** The stages a job goes through. */
+  public enum Status {
+    QUEUED,
+    RUNNING,
+    DONE,
+    FAILED
+  }
+
+  /** A label as shown to the user. */
+  public static final class Label {
+    private final String description;
+    private final float score;
+
+    Label(EntityAnnotation annotation) {
+      description = annotation.getDescription();
+      score = annotation.getScore();
+    }
+  }
+
+  private final String id;
+  private final String imageUrl;
+  private final Status status;
+  private final List<Label> labels;
+  private final String error;
+
+  /** Creates the job stored in the entity. Labels are only needed once the job is done. */
+  AnalysisJob(Entity entity, List<EntityAnnotation> annotations) {
+    id = entity.getKey().getName();
+    imageUrl = (String) entity.getProperty("imageUrl");
+    status = Status.valueOf((String) entity.getProperty("status"));
+    error = (String) entity.getProperty("error");
+    if (annotations == null) {
+      labels = null;
+    } else {
+      labels = new ArrayList<>(annotations.size());
+      for (EntityAnnotation annotation : annotations) {
+        labels.add(new Label(annotation));
+      }
+    }
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  /** Returns whether the job is done or has failed, so its state won't change again. */
+  public boolean isFinished() {
+    return status == Status.DONE || status == Status.FAILED;
+  }
+}
@@ -0,0 +1,215 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.blobstore.BlobInfo;
+import com.google.appengine.api.blobstore.BlobInfoFactory;
+import com.google.appengine.api.blobstore.BlobKey;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.appengine.api.taskqueue.TransientFailureException;
+import com.google.cloud.vision.v1.EntityAnnotation;
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs image analysis in the background so that uploads return right away. Each upload stores a
+ * job in Datastore and adds a task to the image-analysis queue, whose settings in queue.xml bound
+ * how many analyses run at once. The task fetches the image, labels it and records the result on
+ * the job.
+ *
+ * <p>Because jobs live in Datastore, any instance can report on them, however long ago they
+ * finished. Tasks are ordinary requests, so they may use App Engine's APIs, and concurrent tasks
+ * on one instance share Vision API calls through the {@link ImageAnnotationBatcher}.
+ */
+public final class AnalysisJobs {
+
+  /** The URL the analysis tasks are sent to. */
+  public static final String TASK_URL = "/tasks/analyze-image";
+
+  private static final String QUEUE_NAME = "image-analysis";
+  private static final String KIND = "AnalysisJob";
+
+  /** How long a task waits for labels before it gives up and fails the job. */
+  private static final long LABEL_TIMEOUT_SECONDS = 60;
+
+  private static final AnalysisJobs INSTANCE = new AnalysisJobs();
+
+  private final ImageLabelCache labelCache = new ImageLabelCache();
+
+  /**
+   * Jobs whose tasks are running on this instance, so that event streams served here hear about
+   * them finishing without asking Datastore.
+   */
+  private final ConcurrentMap<String, CompletableFuture<AnalysisJob>> running =
+      new ConcurrentHashMap<>();
+
+  private AnalysisJobs() {}
+
+  public static AnalysisJobs getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Stores a queued job for the uploaded image and adds the task that analyzes it. Returns null if
+   * the queue could not take the task.
+   */
+  public AnalysisJob submit(String imageUrl, BlobKey blobKey) {
+    Entity entity = new Entity(KIND, UUID.randomUUID().toString());
+    entity.setUnindexedProperty("imageUrl", imageUrl);
+    entity.setUnindexedProperty("blobKey", blobKey);
+    entity.setUnindexedProperty("status", AnalysisJob.Status.QUEUED.name());
+    entity.setProperty("timestamp", System.currentTimeMillis());
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    datastore.put(entity);
+    try {
+      QueueFactory.getQueue(QUEUE_NAME)
+          .add(TaskOptions.Builder.withUrl(TASK_URL).param("job", entity.getKey().getName()));
+    } catch (TransientFailureException e) {
+      System.err.println("Could not queue image analysis: " + e.getMessage());
+      datastore.delete(entity.getKey());
+      return null;
+    }
+    return new AnalysisJob(entity, null);
+  }
+
+  /** Returns the job with the given id, or null if there is none. */
+  public AnalysisJob get(String id) {
+    Entity entity = load(id);
+    if (entity == null) {
+      return null;
+    }
+    List<EntityAnnotation> labels = null;
+    if (AnalysisJob.Status.DONE.name().equals(entity.getProperty("status"))) {
+      labels = labelCache.get((String) entity.getProperty("hash"));
+    }
+    return new AnalysisJob(entity, labels);
+  }
+
+  /**
+   * Returns a future that completes with the job once its task on this instance finishes, or null
+   * if no task on this instance is running it.
+   */
+  public CompletableFuture<AnalysisJob> getRunning(String id) {
+    return running.get(id);
+  }
+
+  /**
+   * Analyzes the image of the job with the given id and records the labels or the error on the
+   * job. Called by the job's task. Failures to label the image fail the job; anything else is
+   * thrown so that the queue retries the task.
+   */
+  public void run(String id, ImageAnnotationBatcher batcher) {
+    Entity entity = load(id);
+    if (entity == null) {
+      System.err.println("No analysis job " + id);
+      return;
+    }
+    String status = (String) entity.getProperty("status");
+    if (AnalysisJob.Status.DONE.name().equals(status)
+        || AnalysisJob.Status.FAILED.name().equals(status)) {
+      // A retry of a task whose first attempt finished the job.
+      return;
+    }
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    entity.setUnindexedProperty("status", AnalysisJob.Status.RUNNING.name());
+    datastore.put(entity);
+
+    CompletableFuture<AnalysisJob> finished = new CompletableFuture<>();
+    running.put(id, finished);
+    try {
+      List<EntityAnnotation> labels = null;
+      try {
+        labels = getLabels(entity, batcher);
+        entity.setUnindexedProperty("status", AnalysisJob.Status.DONE.name());
+      } catch (ExecutionException e) {
+        System.err.println("Error getting image labels: " + e.getCause().getMessage());
+        fail(entity, "Could not get labels for this image.");
+      } catch (TimeoutException e) {
+        System.err.println("Timed out getting image labels for job " + id);
+        fail(entity, "The Vision API took too long to label this image.");
+      } catch (IOException e) {
+        System.err.println("Could not read the image of job " + id + ": " + e.getMessage());
+        fail(entity, "Could not read the uploaded image.");
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        fail(entity, "Analysis was interrupted.");
+      }
+      datastore.put(entity);
+      finished.complete(new AnalysisJob(entity, labels));
+    } finally {
+      running.remove(id);
+      // Streams waiting here end and reconnect if the job could not be saved.
+      finished.completeExceptionally(new IllegalStateException("Analysis task failed"));
+    }
+  }
+
+  /**
+   * Returns the labels of the job's image, from the label cache if it has been seen before, and
+   * records the image's hash on the job so the labels can be found again.
+   */
+  private List<EntityAnnotation> getLabels(Entity entity, ImageAnnotationBatcher batcher)
+      throws IOException, ExecutionException, InterruptedException, TimeoutException {
+    BlobKey blobKey = (BlobKey) entity.getProperty("blobKey");
+    BlobInfo blobInfo = new BlobInfoFactory().loadBlobInfo(blobKey);
+    if (blobInfo == null) {
+      throw new IOException("Blob " + blobKey.getKeyString() + " no longer exists");
+    }
+    ByteString imageBytes = BlobReader.read(blobKey, blobInfo.getSize());
+    String hash = ImageLabelCache.hash(imageBytes);
+    entity.setUnindexedProperty("hash", hash);
+
+    List<EntityAnnotation> labels = labelCache.get(hash);
+    if (labels == null) {
+      labels = batcher.annotate(imageBytes).get(LABEL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      labelCache.put(hash, labels);
+    }
+    return labels;
+  }
+
+  private static void fail(Entity entity, String error) {
+    entity.setUnindexedProperty("status", AnalysisJob.Status.FAILED.name());
+    entity.setUnindexedProperty("error", error);
+  }
+
+  /** Returns the stored job with the given id, or null if there is none. */
+  private static Entity load(String id) {
+    if (id == null || id.isEmpty()) {
+      return null;
+    }
+    Key key = KeyFactory.createKey(KIND, id);
+    try {
+      return DatastoreServiceFactory.getDatastoreService().get(key);
+    } catch (EntityNotFoundException e) {
+      return null;
+    }
+  }
+}
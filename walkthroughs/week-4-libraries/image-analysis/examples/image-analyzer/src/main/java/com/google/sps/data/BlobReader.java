@@ -0,0 +1,107 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.ThreadManager;
+import com.google.appengine.api.blobstore.BlobKey;
+import com.google.appengine.api.blobstore.BlobstoreService;
+import com.google.appengine.api.blobstore.BlobstoreServiceFactory;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads whole blobs from Blobstore. A single fetch returns at most {@link
+ * BlobstoreService#MAX_BLOB_FETCH_SIZE} bytes, so larger blobs are fetched in chunks, several at a
+ * time, straight into one array sized from the blob's length.
+ */
+public final class BlobReader {
+
+  /** The most chunks fetched at once for a single blob. */
+  private static final int MAX_PARALLEL_FETCHES = 8;
+
+  private static final int CHUNK_SIZE = BlobstoreService.MAX_BLOB_FETCH_SIZE;
+
+  private BlobReader() {}
+
+  /**
+   * Returns the contents of the blob, which must be {@code size} bytes long. The returned
+   * ByteString wraps the fetched array without copying it.
+   */
+  public static ByteString read(BlobKey blobKey, long size) throws IOException {
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Blob too large to read into memory: " + size + " bytes");
+    }
+    BlobstoreService blobstoreService = BlobstoreServiceFactory.getBlobstoreService();
+    byte[] bytes = new byte[(int) size];
+    int chunks = (int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+
+    if (chunks <= 1) {
+      if (size > 0) {
+        readChunk(blobstoreService, blobKey, bytes, 0);
+      }
+      return UnsafeByteOperations.unsafeWrap(bytes);
+    }
+
+    // App Engine only allows API calls from request threads, so the fetches run on threads that
+    // belong to the current request.
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            Math.min(chunks, MAX_PARALLEL_FETCHES), ThreadManager.currentRequestThreadFactory());
+    try {
+      List<Future<Void>> fetches = new ArrayList<>(chunks);
+      for (int i = 0; i < chunks; i++) {
+        int start = i * CHUNK_SIZE;
+        fetches.add(
+            executor.submit(
+                () -> {
+                  readChunk(blobstoreService, blobKey, bytes, start);
+                  return null;
+                }));
+      }
+      for (Future<Void> fetch : fetches) {
+        fetch.get();
+      }
+    } catch (ExecutionException e) {
+      throw new IOException("Could not read blob " + blobKey.getKeyString(), e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading blob " + blobKey.getKeyString(), e);
+    } finally {
+      executor.shutdownNow();
+    }
+    return UnsafeByteOperations.unsafeWrap(bytes);
+  }
+
+  /** Fetches the chunk that starts at the given index into its place in the array. */
+  private static void readChunk(
+      BlobstoreService blobstoreService, BlobKey blobKey, byte[] bytes, int start)
+      throws IOException {
+    int length = Math.min(CHUNK_SIZE, bytes.length - start);
+    // The end index is inclusive.
+    byte[] chunk = blobstoreService.fetchData(blobKey, start, start + length - 1);
+    if (chunk.length != length) {
+      throw new IOException(
+          "Expected " + length + " bytes at " + start + " but read " + chunk.length);
+    }
+    System.arraycopy(chunk, 0, bytes, start, length);
+  }
+}
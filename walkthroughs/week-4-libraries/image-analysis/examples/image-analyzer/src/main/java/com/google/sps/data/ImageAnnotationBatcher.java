@@ -0,0 +1,169 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.cloud.vision.v1.AnnotateImageRequest;
+import com.google.cloud.vision.v1.AnnotateImageResponse;
+import com.google.cloud.vision.v1.BatchAnnotateImagesResponse;
+import com.google.cloud.vision.v1.EntityAnnotation;
+import com.google.cloud.vision.v1.Feature;
+import com.google.cloud.vision.v1.Image;
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Combines label requests for images uploaded at about the same time into a single Vision API
+ * call. The first request to arrive opens a batch and waits a few milliseconds for others to join
+ * it, then sends the batch and hands each image's labels back through its future. A batch is sent
+ * early once it holds {@link #MAX_BATCH_IMAGES} images or {@link #MAX_BATCH_BYTES} bytes.
+ *
+ * <p>Images are labeled by task queue requests, and the image-analysis queue in queue.xml lets up
+ * to {@link #MAX_BATCH_IMAGES} of them run at once, so a burst of uploads can fill a batch. The
+ * waiting and sending happen on the thread of the task that opened the batch, since App Engine
+ * does not let threads outlive the request that started them.
+ */
+public final class ImageAnnotationBatcher {
+
+  /** The most images the Vision API accepts in one call. */
+  public static final int MAX_BATCH_IMAGES = 16;
+
+  /** Keeps each call well under the Vision API's request size limit. */
+  public static final int MAX_BATCH_BYTES = 8 * 1024 * 1024;
+
+  private static final Feature LABEL_DETECTION =
+      Feature.newBuilder().setType(Feature.Type.LABEL_DETECTION).build();
+
+  private final Function<List<AnnotateImageRequest>, BatchAnnotateImagesResponse> annotator;
+  private final long maxDelayNanos;
+
+  private final Object lock = new Object();
+  /** The batch that new images join, or null if the next image should open one. */
+  private Batch openBatch;
+
+  /**
+   * @param annotator sends a batch to the Vision API, such as {@code client::batchAnnotateImages}
+   * @param maxDelayMillis how long the first image in a batch waits for others to join
+   */
+  public ImageAnnotationBatcher(
+      Function<List<AnnotateImageRequest>, BatchAnnotateImagesResponse> annotator,
+      long maxDelayMillis) {
+    this.annotator = annotator;
+    this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+  }
+
+  /** Images waiting to be sent together, with the futures of the requests that sent them. */
+  private static final class Batch {
+    final List<AnnotateImageRequest> requests = new ArrayList<>();
+    final List<CompletableFuture<List<EntityAnnotation>>> futures = new ArrayList<>();
+    int bytes;
+  }
+
+  /**
+   * Returns the labels for the image. The future completes exceptionally if the Vision API could
+   * not label the image. If the thread is interrupted while it waits for a batch to fill up, the
+   * batch is sent right away and the thread's interrupt status is kept.
+   */
+  public CompletableFuture<List<EntityAnnotation>> annotate(ByteString imageBytes) {
+    Image image = Image.newBuilder().setContent(imageBytes).build();
+    AnnotateImageRequest request =
+        AnnotateImageRequest.newBuilder().addFeatures(LABEL_DETECTION).setImage(image).build();
+    CompletableFuture<List<EntityAnnotation>> future = new CompletableFuture<>();
+
+    Batch ownBatch = null;
+    synchronized (lock) {
+      if (openBatch != null && openBatch.bytes + imageBytes.size() > MAX_BATCH_BYTES) {
+        closeOpenBatch();
+      }
+      if (openBatch == null) {
+        openBatch = new Batch();
+        ownBatch = openBatch;
+      }
+      openBatch.requests.add(request);
+      openBatch.futures.add(future);
+      openBatch.bytes += imageBytes.size();
+      if (openBatch.requests.size() == MAX_BATCH_IMAGES) {
+        closeOpenBatch();
+      }
+
+      if (ownBatch != null) {
+        try {
+          // Wait for the batch to fill up or for the delay to run out, whichever comes first.
+          long deadline = System.nanoTime() + maxDelayNanos;
+          long remaining = maxDelayNanos;
+          while (openBatch == ownBatch && remaining > 0) {
+            TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+            remaining = deadline - System.nanoTime();
+          }
+        } catch (InterruptedException e) {
+          // Other requests are waiting on this batch, so it still has to go out.
+          Thread.currentThread().interrupt();
+        } finally {
+          if (openBatch == ownBatch) {
+            openBatch = null;
+          }
+        }
+      }
+    }
+
+    if (ownBatch != null) {
+      send(ownBatch);
+    }
+    return future;
+  }
+
+  /** Stops new images from joining the open batch and wakes up the request that will send it. */
+  private void closeOpenBatch() {
+    openBatch = null;
+    lock.notifyAll();
+  }
+
+  /**
+   * Sends the batch and completes every one of its futures. Errors such as running out of memory
+   * also fail the futures before they are rethrown, so no request is left waiting on them.
+   */
+  private void send(Batch batch) {
+    try {
+      List<AnnotateImageResponse> responses = annotator.apply(batch.requests).getResponsesList();
+
+      // Responses come back in the same order as the requests.
+      for (int i = 0; i < batch.futures.size(); i++) {
+        CompletableFuture<List<EntityAnnotation>> future = batch.futures.get(i);
+        if (i >= responses.size()) {
+          future.completeExceptionally(new IOException("No response for image " + i));
+        } else if (responses.get(i).hasError()) {
+          future.completeExceptionally(new IOException(responses.get(i).getError().getMessage()));
+        } else {
+          future.complete(responses.get(i).getLabelAnnotationsList());
+        }
+      }
+    } catch (RuntimeException e) {
+      failAll(batch, e);
+    } catch (Error e) {
+      failAll(batch, e);
+      throw e;
+    }
+  }
+
+  private static void failAll(Batch batch, Throwable cause) {
+    for (CompletableFuture<List<EntityAnnotation>> future : batch.futures) {
+      future.completeExceptionally(cause);
+    }
+  }
+}
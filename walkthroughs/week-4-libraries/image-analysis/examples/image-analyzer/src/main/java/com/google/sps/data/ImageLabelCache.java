@@ -0,0 +1,117 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.Blob;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.cloud.vision.v1.AnnotateImageResponse;
+import com.google.cloud.vision.v1.EntityAnnotation;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the labels found for each image, keyed by a SHA-256 hash of its bytes, so uploading
+ * the same image again does not call the Vision API. Recently used labels are kept in memory and
+ * every entry is also stored in Datastore, where other instances and restarts can find it.
+ */
+public final class ImageLabelCache {
+
+  /** The number of images whose labels are kept in memory. */
+  private static final int MEMORY_CAPACITY = 1000;
+
+  private static final String KIND = "ImageLabels";
+
+  private final Map<String, List<EntityAnnotation>> memory =
+      new LinkedHashMap<String, List<EntityAnnotation>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<EntityAnnotation>> eldest) {
+          return size() > MEMORY_CAPACITY;
+        }
+      };
+
+  /** Returns the hex-encoded SHA-256 hash of the image, which identifies it in the cache. */
+  public static String hash(ByteString imageBytes) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is always available", e);
+    }
+    digest.update(imageBytes.asReadOnlyByteBuffer());
+    StringBuilder hex = new StringBuilder(64);
+    for (byte b : digest.digest()) {
+      hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return hex.toString();
+  }
+
+  /** Returns the labels stored for the image with the given hash, or null if there are none. */
+  public List<EntityAnnotation> get(String hash) {
+    synchronized (memory) {
+      List<EntityAnnotation> labels = memory.get(hash);
+      if (labels != null) {
+        return labels;
+      }
+    }
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Entity entity;
+    try {
+      entity = datastore.get(KeyFactory.createKey(KIND, hash));
+    } catch (EntityNotFoundException e) {
+      return null;
+    }
+
+    List<EntityAnnotation> labels;
+    try {
+      Blob blob = (Blob) entity.getProperty("labels");
+      labels = AnnotateImageResponse.parseFrom(blob.getBytes()).getLabelAnnotationsList();
+    } catch (InvalidProtocolBufferException e) {
+      System.err.println("Could not parse stored labels for " + hash + ": " + e.getMessage());
+      return null;
+    }
+    synchronized (memory) {
+      memory.put(hash, labels);
+    }
+    return labels;
+  }
+
+  /** Stores the labels found for the image with the given hash. */
+  public void put(String hash, List<EntityAnnotation> labels) {
+    // The labels are stored as one serialized message; they are only ever read back whole.
+    byte[] serialized =
+        AnnotateImageResponse.newBuilder().addAllLabelAnnotations(labels).build().toByteArray();
+    Key key = KeyFactory.createKey(KIND, hash);
+    Entity entity = new Entity(key);
+    entity.setUnindexedProperty("labels", new Blob(serialized));
+    entity.setProperty("timestamp", System.currentTimeMillis());
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    datastore.put(entity);
+    synchronized (memory) {
+      memory.put(hash, labels);
+    }
+  }
+}
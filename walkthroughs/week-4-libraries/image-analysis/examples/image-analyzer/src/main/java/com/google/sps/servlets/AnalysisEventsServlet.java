@@ -0,0 +1,112 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.servlets;
+
+import com.google.gson.Gson;
+import com.google.sps.data.AnalysisJob;
+import com.google.sps.data.AnalysisJobs;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Streams an image analysis job to the page as Server-Sent Events: one "job" event with its state
+ * right away and another when it finishes.
+ *
+ * <p>If the job's task is running on this instance, the stream stays open and the final event is
+ * written by the task's thread, so no thread is held while the job runs. Otherwise the stream ends
+ * after the first event and the browser reconnects a second later, possibly to another instance,
+ * to read the job's state from Datastore again.
+ */
+@WebServlet(urlPatterns = "/image-analysis-events", asyncSupported = true)
+public class AnalysisEventsServlet extends HttpServlet {
+
+  /** Browsers reconnect after this, so a slow job just means another request. */
+  private static final long TIMEOUT_MILLIS = 30 * 1000;
+
+  private final AnalysisJobs jobs = AnalysisJobs.getInstance();
+  private final Gson gson = new Gson();
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String id = request.getParameter("job");
+    AnalysisJob job = id == null ? null : jobs.get(id);
+    if (job == null) {
+      response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+      response.setContentType("text/plain");
+      response.getWriter().println("No analysis job " + id + ".");
+      return;
+    }
+
+    response.setContentType("text/event-stream");
+    response.setCharacterEncoding("UTF-8");
+    response.setHeader("Cache-Control", "no-cache");
+    PrintWriter out = response.getWriter();
+    out.print("retry: 1000\n\n");
+    sendJob(out, job);
+    CompletableFuture<AnalysisJob> running = jobs.getRunning(id);
+    if (job.isFinished() || running == null) {
+      return;
+    }
+
+    AsyncContext async = request.startAsync();
+    async.setTimeout(TIMEOUT_MILLIS);
+    // Either the job finishing or the timeout ends the stream, whichever happens first.
+    AtomicBoolean ended = new AtomicBoolean();
+    async.addListener(
+        new AsyncListener() {
+          @Override
+          public void onTimeout(AsyncEvent event) {
+            if (ended.compareAndSet(false, true)) {
+              async.complete();
+            }
+          }
+
+          @Override
+          public void onComplete(AsyncEvent event) {}
+
+          @Override
+          public void onError(AsyncEvent event) {
+            ended.set(true);
+          }
+
+          @Override
+          public void onStartAsync(AsyncEvent event) {}
+        });
+    running.whenComplete(
+        (finishedJob, error) -> {
+          if (ended.compareAndSet(false, true)) {
+            // A task that failed to save the job leaves the browser to reconnect and look again.
+            if (finishedJob != null) {
+              sendJob(out, finishedJob);
+            }
+            async.complete();
+          }
+        });
+  }
+
+  private void sendJob(PrintWriter out, AnalysisJob job) {
+    out.print("event: job\ndata: " + gson.toJson(job) + "\n\n");
+    out.flush();
+  }
+}
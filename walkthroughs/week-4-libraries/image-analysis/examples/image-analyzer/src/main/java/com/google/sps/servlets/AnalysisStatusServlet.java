@@ -0,0 +1,47 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.servlets;
+
+import com.google.gson.Gson;
+import com.google.sps.data.AnalysisJob;
+import com.google.sps.data.AnalysisJobs;
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/** Responds with the current state of an image analysis job as JSON, for pages to poll. */
+@WebServlet("/image-analysis-status")
+public class AnalysisStatusServlet extends HttpServlet {
+
+  private final AnalysisJobs jobs = AnalysisJobs.getInstance();
+  private final Gson gson = new Gson();
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String id = request.getParameter("job");
+    AnalysisJob job = id == null ? null : jobs.get(id);
+    if (job == null) {
+      response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+      response.setContentType("text/plain");
+      response.getWriter().println("No analysis job " + id + ".");
+      return;
+    }
+
+    response.setContentType("application/json;");
+    response.getWriter().println(gson.toJson(job));
+  }
+}
@@ -0,0 +1,65 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.servlets;
+
+import com.google.cloud.vision.v1.ImageAnnotatorClient;
+import com.google.sps.data.AnalysisJobs;
+import com.google.sps.data.ImageAnnotationBatcher;
+import java.io.IOException;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Runs one image analysis job. The image-analysis task queue sends a request here for each upload,
+ * with the job's id in the job parameter. WEB-INF/web.xml limits /tasks/* to admins, which the
+ * task queue counts as.
+ */
+@WebServlet(AnalysisJobs.TASK_URL)
+public class AnalyzeImageTaskServlet extends HttpServlet {
+
+  /** How long an image waits for others to share its Vision API call. */
+  private static final long BATCH_DELAY_MILLIS = 5;
+
+  private final AnalysisJobs jobs = AnalysisJobs.getInstance();
+
+  /** Creating a client opens gRPC channels, so a single client is shared by every task. */
+  private ImageAnnotatorClient client;
+
+  private ImageAnnotationBatcher batcher;
+
+  @Override
+  public void init() throws ServletException {
+    try {
+      client = ImageAnnotatorClient.create();
+    } catch (IOException e) {
+      throw new ServletException("Could not create the Vision API client", e);
+    }
+    batcher = new ImageAnnotationBatcher(client::batchAnnotateImages, BATCH_DELAY_MILLIS);
+  }
+
+  @Override
+  public void destroy() {
+    client.close();
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) {
+    jobs.run(request.getParameter("job"), batcher);
+    response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+  }
+}
@@ -22,20 +22,12 @@ import com.google.appengine.api.blobstore.BlobstoreServiceFactory;
 import com.google.appengine.api.images.ImagesService;
 import com.google.appengine.api.images.ImagesServiceFactory;
 import com.google.appengine.api.images.ServingUrlOptions;
-import com.google.cloud.vision.v1.AnnotateImageRequest;
-import com.google.cloud.vision.v1.AnnotateImageResponse;
-import com.google.cloud.vision.v1.BatchAnnotateImagesResponse;
-import com.google.cloud.vision.v1.EntityAnnotation;
-import com.google.cloud.vision.v1.Feature;
-import com.google.cloud.vision.v1.Image;
-import com.google.cloud.vision.v1.ImageAnnotatorClient;
-import com.google.protobuf.ByteString;
-import java.io.ByteArrayOutputStream;
+import com.google.sps.data.AnalysisJob;
+import com.google.sps.data.AnalysisJobs;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import javax.servlet.annotation.WebServlet;
@@ -45,11 +37,14 @@ import javax.servlet.http.HttpServletResponse;
 
 /**
  * When the user submits the form, Blobstore processes the file upload and then forwards the request
- * to this servlet. This servlet can then analyze the image using the Vision API.
+ * to this servlet. This servlet queues a job that analyzes the image using the Vision API and
+ * responds right away; the page then follows the analysis job until its labels are ready.
  */
 @WebServlet("/image-analysis")
 public class ImageAnalysisServlet extends HttpServlet {
 
+  private final AnalysisJobs jobs = AnalysisJobs.getInstance();
+
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
 
@@ -58,42 +53,45 @@ public class ImageAnalysisServlet extends HttpServlet {
     // Get the message entered by the user.
     String message = request.getParameter("message");
 
-    // Get the BlobKey that points to the image uploaded by the user.
-    BlobKey blobKey = getBlobKey(request, "image");
+    // Get the BlobInfo that describes the image uploaded by the user.
+    BlobInfo blobInfo = getBlobInfo(request, "image");
 
     // User didn't upload a file, so render an error message.
-    if (blobKey == null) {
+    if (blobInfo == null) {
       out.println("Please upload an image file.");
       return;
     }
+    BlobKey blobKey = blobInfo.getBlobKey();
 
     // Get the URL of the image that the user uploaded.
     String imageUrl = getUploadedFileUrl(blobKey);
 
-    // Get the labels of the image that the user uploaded.
-    byte[] blobBytes = getBlobBytes(blobKey);
-    List<EntityAnnotation> imageLabels = getImageLabels(blobBytes);
+    // Queue a job that gets the labels of the image that the user uploaded.
+    AnalysisJob job = jobs.submit(imageUrl, blobKey);
+    if (job == null) {
+      response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+      out.println("Could not start analyzing the image. Please try again soon.");
+      return;
+    }
 
-    // Output some HTML that shows the data the user entered.
-    // A real codebase would probably store these in Datastore.
+    // Output some HTML that shows the image, and a list that analysis.js fills in with the
+    // labels once the job finishes.
     response.setContentType("text/html");
+    out.println("<script src=\"/analysis.js\"></script>");
     out.println("<p>Here's the image you uploaded:</p>");
     out.println("<a href=\"" + imageUrl + "\">");
     out.println("<img src=\"" + imageUrl + "\" />");
     out.println("</a>");
     out.println("<p>Here are the labels we extracted:</p>");
-    out.println("<ul>");
-    for (EntityAnnotation label : imageLabels) {
-      out.println("<li>" + label.getDescription() + " " + label.getScore());
-    }
-    out.println("</ul>");
+    out.println("<ul id=\"labels\"><li>Analyzing...</li></ul>");
+    out.println("<script>watchAnalysis(\"" + job.getId() + "\");</script>");
   }
 
   /**
-   * Returns the BlobKey that points to the file uploaded by the user, or null if the user didn't
-   * upload a file.
+   * Returns the BlobInfo of the file uploaded by the user, or null if the user didn't upload a
+   * file.
    */
-  private BlobKey getBlobKey(HttpServletRequest request, String formInputElementName) {
+  private BlobInfo getBlobInfo(HttpServletRequest request, String formInputElementName) {
     BlobstoreService blobstoreService = BlobstoreServiceFactory.getBlobstoreService();
     Map<String, List<BlobKey>> blobs = blobstoreService.getUploads(request);
     List<BlobKey> blobKeys = blobs.get("image");
@@ -113,63 +111,7 @@ public class ImageAnalysisServlet extends HttpServlet {
       return null;
     }
 
-    return blobKey;
-  }
-
-  /**
-   * Blobstore stores files as binary data. This function retrieves the binary data stored at the
-   * BlobKey parameter.
-   */
-  private byte[] getBlobBytes(BlobKey blobKey) throws IOException {
-    BlobstoreService blobstoreService = BlobstoreServiceFactory.getBlobstoreService();
-    ByteArrayOutputStream outputBytes = new ByteArrayOutputStream();
-
-    int fetchSize = BlobstoreService.MAX_BLOB_FETCH_SIZE;
-    long currentByteIndex = 0;
-    boolean continueReading = true;
-    while (continueReading) {
-      // end index is inclusive, so we have to subtract 1 to get fetchSize bytes
-      byte[] b =
-          blobstoreService.fetchData(blobKey, currentByteIndex, currentByteIndex + fetchSize - 1);
-      outputBytes.write(b);
-
-      // if we read fewer bytes than we requested, then we reached the end
-      if (b.length < fetchSize) {
-        continueReading = false;
-      }
-
-      currentByteIndex += fetchSize;
-    }
-
-    return outputBytes.toByteArray();
-  }
-
-  /**
-   * Uses the Google Cloud Vision API to generate a list of labels that apply to the image
-   * represented by the binary data stored in imgBytes.
-   */
-  private List<EntityAnnotation> getImageLabels(byte[] imgBytes) throws IOException {
-    ByteString byteString = ByteString.copyFrom(imgBytes);
-    Image image = Image.newBuilder().setContent(byteString).build();
-
-    Feature feature = Feature.newBuilder().setType(Feature.Type.LABEL_DETECTION).build();
-    AnnotateImageRequest request =
-        AnnotateImageRequest.newBuilder().addFeatures(feature).setImage(image).build();
-    List<AnnotateImageRequest> requests = new ArrayList<>();
-    requests.add(request);
-
-    ImageAnnotatorClient client = ImageAnnotatorClient.create();
-    BatchAnnotateImagesResponse batchResponse = client.batchAnnotateImages(requests);
-    client.close();
-    List<AnnotateImageResponse> imageResponses = batchResponse.getResponsesList();
-    AnnotateImageResponse imageResponse = imageResponses.get(0);
-
-    if (imageResponse.hasError()) {
-      System.err.println("Error getting image labels: " + imageResponse.getError().getMessage());
-      return null;
-    }
-
-    return imageResponse.getLabelAnnotationsList();
+    return blobInfo;
   }
 
   /** Returns a URL that points to the uploaded file. */
@@ -0,0 +1,91 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+/**
+ * Follows an image analysis job until it finishes, then shows its labels. Uses Server-Sent Events
+ * where the browser supports them and polls the status endpoint otherwise.
+ */
+function watchAnalysis(jobId) {
+  const query = '?job=' + encodeURIComponent(jobId);
+  if (!window.EventSource) {
+    pollAnalysis(query);
+    return;
+  }
+
+  const events = new EventSource('/image-analysis-events' + query);
+  events.addEventListener('job', (event) => {
+    const job = JSON.parse(event.data);
+    if (isFinished(job)) {
+      events.close();
+      showLabels(job);
+    }
+  });
+  // The browser reconnects by itself after the server ends a stream. It only gives up, leaving
+  // the stream closed, when the server answers with an error such as an unknown job.
+  events.onerror = () => {
+    if (events.readyState === EventSource.CLOSED) {
+      showError();
+    }
+  };
+}
+
+/** Asks for the job's status every second until it finishes. */
+function pollAnalysis(query) {
+  fetch('/image-analysis-status' + query).then((response) => {
+    if (!response.ok) {
+      throw new Error('Status request failed: ' + response.status);
+    }
+    return response.json();
+  }).then((job) => {
+    if (isFinished(job)) {
+      showLabels(job);
+    } else {
+      setTimeout(() => pollAnalysis(query), 1000);
+    }
+  }).catch((error) => {
+    console.error(error);
+    showError();
+  });
+}
+
+function isFinished(job) {
+  return job.status === 'DONE' || job.status === 'FAILED';
+}
+
+/** Replaces the placeholder list with the job's labels or its error. */
+function showLabels(job) {
+  const labelsElement = document.getElementById('labels');
+  labelsElement.innerHTML = '';
+  if (job.status === 'FAILED') {
+    labelsElement.appendChild(createListElement(job.error));
+    return;
+  }
+  job.labels.forEach((label) => {
+    labelsElement.appendChild(createListElement(label.description + ' ' + label.score));
+  });
+}
+
+/** Replaces the placeholder list with a message saying the job could not be followed. */
+function showError() {
+  const labelsElement = document.getElementById('labels');
+  labelsElement.innerHTML = '';
+  labelsElement.appendChild(
+      createListElement('Could not get the analysis results. Please try uploading again.'));
+}
+
+function createListElement(text) {
+  const liElement = document.createElement('li');
+  liElement.innerText = text;
+  return liElement;
+}
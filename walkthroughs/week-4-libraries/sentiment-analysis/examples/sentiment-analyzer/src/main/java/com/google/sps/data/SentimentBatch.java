@@ -0,0 +1,56 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.Reader;
+import java.util.List;
+
+/** The JSON body of a batch sentiment request: {"messages": [...]}. */
+public final class SentimentBatch {
+
+  /** The most messages analyzed by a single request. */
+  public static final int MAX_SIZE = 100;
+
+  private static final Gson GSON = new Gson();
+
+  private List<String> messages;
+
+  /**
+   * Parses a batch from the given request body. Returns null if the body is not valid JSON, has
+   * no messages, contains null messages or holds more than MAX_SIZE messages.
+   */
+  public static SentimentBatch parse(Reader reader) {
+    SentimentBatch batch;
+    try {
+      batch = GSON.fromJson(reader, SentimentBatch.class);
+    } catch (JsonParseException e) {
+      System.err.println("Invalid sentiment batch body: " + e.getMessage());
+      return null;
+    }
+    if (batch == null
+        || batch.messages == null
+        || batch.messages.size() > MAX_SIZE
+        || batch.messages.contains(null)) {
+      return null;
+    }
+    return batch;
+  }
+
+  public List<String> getMessages() {
+    return messages;
+  }
+}
@@ -0,0 +1,173 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.gax.rpc.UnaryCallable;
+import com.google.cloud.language.v1.AnalyzeSentimentRequest;
+import com.google.cloud.language.v1.AnalyzeSentimentResponse;
+import com.google.cloud.language.v1.Document;
+import com.google.cloud.language.v1.LanguageServiceClient;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Scores the sentiment of messages with the Natural Language API, remembering the scores of
+ * recent messages so that repeated messages don't cost another API call. Messages are normalized
+ * first, so messages that differ only in whitespace share a score.
+ */
+public final class SentimentCache {
+
+  /**
+   * How many calls a batch keeps in flight at once. Every uncached message is its own call, and
+   * firing a full batch of them together would trip the API's per-minute request limit.
+   */
+  private static final int MAX_CONCURRENT_CALLS = 16;
+
+  private final UnaryCallable<AnalyzeSentimentRequest, AnalyzeSentimentResponse> analyzeSentiment;
+  private final LinkedHashMap<String, Float> scores;
+
+  /** Creates a cache that sends misses to the API through the given client. */
+  public SentimentCache(LanguageServiceClient languageService, int maxEntries) {
+    // The callable offers both blocking and future calls, so batches can overlap their requests.
+    this.analyzeSentiment = languageService.analyzeSentimentCallable();
+    this.scores =
+        new LinkedHashMap<String, Float>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Float> eldest) {
+            return size() > maxEntries;
+          }
+        };
+  }
+
+  /** Returns the sentiment score of the message, from -1 (negative) to 1 (positive). */
+  public float getScore(String message) {
+    String text = normalize(message);
+    String key = key(text);
+    Float cached = get(key);
+    if (cached != null) {
+      return cached;
+    }
+    float score = analyzeSentiment.call(request(text)).getDocumentSentiment().getScore();
+    put(key, score);
+    return score;
+  }
+
+  /**
+   * Returns the sentiment scores of the messages in the same order. Messages that aren't cached
+   * are analyzed concurrently, each distinct message once.
+   */
+  public List<Float> getScores(List<String> messages) throws IOException {
+    List<String> keys = new ArrayList<>(messages.size());
+    Map<String, Float> results = new LinkedHashMap<>();
+    Map<String, String> missing = new LinkedHashMap<>();
+    for (String message : messages) {
+      String text = normalize(message);
+      String key = key(text);
+      keys.add(key);
+      if (results.containsKey(key) || missing.containsKey(key)) {
+        continue;
+      }
+      Float cached = get(key);
+      if (cached != null) {
+        results.put(key, cached);
+      } else {
+        missing.put(key, text);
+      }
+    }
+
+    // Start a window of calls, then wait for them before starting the next, so no more than
+    // MAX_CONCURRENT_CALLS are ever in flight.
+    List<Map.Entry<String, String>> pending = new ArrayList<>(missing.entrySet());
+    for (int start = 0; start < pending.size(); start += MAX_CONCURRENT_CALLS) {
+      int end = Math.min(start + MAX_CONCURRENT_CALLS, pending.size());
+      List<ApiFuture<AnalyzeSentimentResponse>> calls = new ArrayList<>(end - start);
+      for (int i = start; i < end; i++) {
+        calls.add(analyzeSentiment.futureCall(request(pending.get(i).getValue())));
+      }
+      for (int i = start; i < end; i++) {
+        float score = await(calls.get(i - start)).getDocumentSentiment().getScore();
+        put(pending.get(i).getKey(), score);
+        results.put(pending.get(i).getKey(), score);
+      }
+    }
+
+    List<Float> batchScores = new ArrayList<>(keys.size());
+    for (String key : keys) {
+      batchScores.add(results.get(key));
+    }
+    return batchScores;
+  }
+
+  /**
+   * Returns the text in a canonical form: Unicode composed characters, runs of whitespace
+   * collapsed to one space and no leading or trailing whitespace.
+   */
+  static String normalize(String message) {
+    return Normalizer.normalize(message, Normalizer.Form.NFC).trim().replaceAll("\\s+", " ");
+  }
+
+  private static AnalyzeSentimentRequest request(String text) {
+    Document doc = Document.newBuilder().setContent(text).setType(Document.Type.PLAIN_TEXT).build();
+    return AnalyzeSentimentRequest.newBuilder().setDocument(doc).build();
+  }
+
+  private static AnalyzeSentimentResponse await(ApiFuture<AnalyzeSentimentResponse> call)
+      throws IOException {
+    try {
+      return call.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IOException("Sentiment analysis failed", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for sentiment analysis");
+    }
+  }
+
+  private synchronized Float get(String key) {
+    return scores.get(key);
+  }
+
+  private synchronized void put(String key, float score) {
+    scores.put(key, score);
+  }
+
+  /**
+   * Returns the key for the normalized text. Keys are fixed-size digests, so the cache's memory
+   * grows with its entry count no matter how long the analyzed messages were.
+   */
+  private static String key(String text) {
+    try {
+      byte[] digest =
+          MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+      return String.format("%064x", new BigInteger(1, digest));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is unavailable, so scores can't be keyed", e);
+    }
+  }
+}
@@ -14,28 +14,61 @@
 
 package com.google.sps.servlets;
 
-import com.google.cloud.language.v1.Document;
 import com.google.cloud.language.v1.LanguageServiceClient;
-import com.google.cloud.language.v1.Sentiment;
+import com.google.gson.Gson;
+import com.google.sps.data.SentimentBatch;
+import com.google.sps.data.SentimentCache;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-@WebServlet("/sentiment")
+/**
+ * Scores the sentiment of messages. /sentiment takes a single message from the form on the home
+ * page, and /sentiment-batch takes {"messages": [...]} and responds with {"scores": [...]}.
+ *
+ * <p>Both share one LanguageServiceClient for the life of the servlet, since setting up its
+ * connection takes far longer than a call over it.
+ */
+@WebServlet({"/sentiment", "/sentiment-batch"})
 public class SentimentAnalysisServlet extends HttpServlet {
 
+  /** How many message scores to remember. */
+  private static final int MAX_CACHED_SCORES = 10000;
+
+  private static final Gson GSON = new Gson();
+
+  private LanguageServiceClient languageService;
+  private SentimentCache sentimentCache;
+
   @Override
-  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    String message = request.getParameter("message");
+  public void init() throws ServletException {
+    try {
+      languageService = LanguageServiceClient.create();
+    } catch (IOException e) {
+      throw new ServletException("Could not create the Natural Language API client", e);
+    }
+    sentimentCache = new SentimentCache(languageService, MAX_CACHED_SCORES);
+  }
 
-    Document doc =
-        Document.newBuilder().setContent(message).setType(Document.Type.PLAIN_TEXT).build();
-    LanguageServiceClient languageService = LanguageServiceClient.create();
-    Sentiment sentiment = languageService.analyzeSentiment(doc).getDocumentSentiment();
-    float score = sentiment.getScore();
+  @Override
+  public void destroy() {
     languageService.close();
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    if ("/sentiment-batch".equals(request.getServletPath())) {
+      doBatch(request, response);
+      return;
+    }
+
+    String message = request.getParameter("message");
+    float score = sentimentCache.getScore(message);
 
     // Output the sentiment score as HTML.
     // A real project would probably store the score alongside the content.
@@ -45,4 +78,23 @@ public class SentimentAnalysisServlet extends HttpServlet {
     response.getWriter().println("<p>Sentiment analysis score: " + score + "</p>");
     response.getWriter().println("<p><a href=\"/\">Back</a></p>");
   }
+
+  private void doBatch(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    request.setCharacterEncoding("UTF-8");
+    SentimentBatch batch = SentimentBatch.parse(request.getReader());
+    if (batch == null) {
+      response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+      response.setContentType("text/plain");
+      response.getWriter().println(
+          "Expected {\"messages\": [...]} with at most " + SentimentBatch.MAX_SIZE + " messages.");
+      return;
+    }
+
+    List<Float> scores = sentimentCache.getScores(batch.getMessages());
+
+    response.setContentType("application/json; charset=UTF-8");
+    response.setCharacterEncoding("UTF-8");
+    response.getWriter().println(GSON.toJson(Collections.singletonMap("scores", scores)));
+  }
 }
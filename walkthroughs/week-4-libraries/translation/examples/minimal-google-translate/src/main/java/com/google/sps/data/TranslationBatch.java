@@ -0,0 +1,63 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.Reader;
+import java.util.List;
+
+/** The JSON body of a batch translation request: {"texts": [...], "languageCode": "es"}. */
+public final class TranslationBatch {
+
+  /** The most strings translated by a single request. */
+  public static final int MAX_SIZE = 1000;
+
+  private static final Gson GSON = new Gson();
+
+  private List<String> texts;
+  private String languageCode;
+
+  /**
+   * Parses a batch from the given request body. Returns null if the body is not valid JSON, is
+   * missing either field, contains null texts or holds more than MAX_SIZE texts.
+   */
+  public static TranslationBatch parse(Reader reader) {
+    TranslationBatch batch;
+    try {
+      batch = GSON.fromJson(reader, TranslationBatch.class);
+    } catch (JsonParseException e) {
+      System.err.println("Could not parse translation batch JSON: " + e.getMessage());
+      return null;
+    }
+    if (batch == null
+        || batch.texts == null
+        || batch.texts.size() > MAX_SIZE
+        || batch.texts.contains(null)
+        || batch.languageCode == null
+        || batch.languageCode.isEmpty()) {
+      return null;
+    }
+    return batch;
+  }
+
+  public List<String> getTexts() {
+    return texts;
+  }
+
+  public String getLanguageCode() {
+    return languageCode;
+  }
+}
@@ -0,0 +1,199 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.cloud.translate.Translate;
+import com.google.cloud.translate.TranslateOptions;
+import com.google.cloud.translate.Translation;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Translates text with a shared Translation API client, remembering recent translations so that
+ * repeated phrases don't cost another API call. Entries are keyed by a hash of the text and the
+ * target language, expire after a while, and the least recently used ones are dropped once the
+ * cache is full.
+ */
+public final class TranslationCache {
+
+  /** How many translations to remember. */
+  private static final int MAX_ENTRIES = 10000;
+
+  /** How long to trust a cached translation, since the API's translations improve over time. */
+  private static final long TTL_MILLIS = 24 * 60 * 60 * 1000;
+
+  /** The most strings the Translation API accepts in one call. */
+  public static final int MAX_STRINGS_PER_CALL = 128;
+
+  private static TranslationCache instance;
+
+  private final Translator translator;
+  private final int maxEntries;
+  private final long ttlMillis;
+  private final LinkedHashMap<String, CachedTranslation> entries;
+
+  /**
+   * Sends one call's worth of strings to be translated into one language, returning the
+   * translations in the same order. The app uses {@link #fromClient}; TranslationCacheTest counts
+   * the calls a fake receives.
+   */
+  public interface Translator {
+    List<String> translate(List<String> texts, String languageCode);
+  }
+
+  /** Returns a translator that makes one Translation API call per batch through the client. */
+  public static Translator fromClient(Translate translate) {
+    return (texts, languageCode) -> {
+      List<Translation> translations =
+          translate.translate(texts, Translate.TranslateOption.targetLanguage(languageCode));
+      List<String> translatedTexts = new ArrayList<>(translations.size());
+      for (Translation translation : translations) {
+        translatedTexts.add(translation.getTranslatedText());
+      }
+      return translatedTexts;
+    };
+  }
+
+  private static final class CachedTranslation {
+    private final String translatedText;
+    private final long expiresMillis;
+
+    private CachedTranslation(String translatedText, long expiresMillis) {
+      this.translatedText = translatedText;
+      this.expiresMillis = expiresMillis;
+    }
+  }
+
+  /** Returns the cache shared by the servlets, which uses the default Translation API client. */
+  public static synchronized TranslationCache getInstance() {
+    if (instance == null) {
+      instance =
+          new TranslationCache(
+              fromClient(TranslateOptions.getDefaultInstance().getService()),
+              MAX_ENTRIES,
+              TTL_MILLIS);
+    }
+    return instance;
+  }
+
+  /** Creates a cache that sends misses to the given translator. */
+  public TranslationCache(Translator translator, int maxEntries, long ttlMillis) {
+    this.translator = translator;
+    this.maxEntries = maxEntries;
+    this.ttlMillis = ttlMillis;
+    this.entries =
+        new LinkedHashMap<String, CachedTranslation>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, CachedTranslation> eldest) {
+            return size() > TranslationCache.this.maxEntries;
+          }
+        };
+  }
+
+  /** Translates one string into the given language. */
+  public String translate(String text, String languageCode) {
+    String key = key(text, languageCode);
+    String cached = get(key);
+    if (cached != null) {
+      return cached;
+    }
+    String translatedText =
+        translator.translate(Collections.singletonList(text), languageCode).get(0);
+    put(key, translatedText);
+    return translatedText;
+  }
+
+  /**
+   * Translates many strings into the given language, returning the translations in the same
+   * order. Only strings that aren't cached are sent to the API, each distinct string once, in as
+   * few calls as the API allows.
+   */
+  public List<String> translate(List<String> texts, String languageCode) {
+    List<String> keys = new ArrayList<>(texts.size());
+    Map<String, String> results = new LinkedHashMap<>();
+    Map<String, String> missing = new LinkedHashMap<>();
+    for (String text : texts) {
+      String key = key(text, languageCode);
+      keys.add(key);
+      if (results.containsKey(key) || missing.containsKey(key)) {
+        continue;
+      }
+      String cached = get(key);
+      if (cached != null) {
+        results.put(key, cached);
+      } else {
+        missing.put(key, text);
+      }
+    }
+
+    List<String> missingKeys = new ArrayList<>(missing.keySet());
+    List<String> missingTexts = new ArrayList<>(missing.values());
+    for (int start = 0; start < missingTexts.size(); start += MAX_STRINGS_PER_CALL) {
+      int end = Math.min(start + MAX_STRINGS_PER_CALL, missingTexts.size());
+      List<String> translations =
+          translator.translate(missingTexts.subList(start, end), languageCode);
+      for (int i = start; i < end; i++) {
+        String translatedText = translations.get(i - start);
+        put(missingKeys.get(i), translatedText);
+        results.put(missingKeys.get(i), translatedText);
+      }
+    }
+
+    List<String> translatedTexts = new ArrayList<>(keys.size());
+    for (String key : keys) {
+      translatedTexts.add(results.get(key));
+    }
+    return translatedTexts;
+  }
+
+  /** Returns the cached translation for the key, or null if it is missing or has expired. */
+  private synchronized String get(String key) {
+    CachedTranslation entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.expiresMillis <= System.currentTimeMillis()) {
+      entries.remove(key);
+      return null;
+    }
+    return entry.translatedText;
+  }
+
+  private synchronized void put(String key, String translatedText) {
+    long expiresMillis = System.currentTimeMillis() + ttlMillis;
+    entries.put(key, new CachedTranslation(translatedText, expiresMillis));
+  }
+
+  /**
+   * Returns the key for a translation. The batch endpoint accepts whole paragraphs, so keys hold a
+   * digest of the source text instead of a second copy of it next to the translation.
+   */
+  private static String key(String text, String languageCode) {
+    try {
+      byte[] digest =
+          MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+      return languageCode + ":" + String.format("%064x", new BigInteger(1, digest));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("No SHA-256 provider for translation cache keys", e);
+    }
+  }
+}
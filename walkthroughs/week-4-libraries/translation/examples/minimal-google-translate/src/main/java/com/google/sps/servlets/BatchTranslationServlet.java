@@ -0,0 +1,58 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.Gson;
+import com.google.sps.data.TranslationBatch;
+import com.google.sps.data.TranslationCache;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Translates many strings at once. Takes {"texts": [...], "languageCode": "es"} and responds with
+ * {"translations": [...]} in the same order.
+ */
+@WebServlet("/translate-batch")
+public class BatchTranslationServlet extends HttpServlet {
+
+  private static final Gson GSON = new Gson();
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    request.setCharacterEncoding("UTF-8");
+    TranslationBatch batch = TranslationBatch.parse(request.getReader());
+    if (batch == null) {
+      response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+      response.setContentType("text/plain");
+      response.getWriter().println(
+          "Expected {\"texts\": [...], \"languageCode\": \"...\"} with at most "
+              + TranslationBatch.MAX_SIZE + " texts.");
+      return;
+    }
+
+    List<String> translations =
+        TranslationCache.getInstance().translate(batch.getTexts(), batch.getLanguageCode());
+
+    response.setContentType("application/json; charset=UTF-8");
+    response.setCharacterEncoding("UTF-8");
+    response.getWriter()
+        .println(GSON.toJson(Collections.singletonMap("translations", translations)));
+  }
+}
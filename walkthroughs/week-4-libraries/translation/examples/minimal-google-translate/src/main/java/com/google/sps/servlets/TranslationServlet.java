@@ -14,9 +14,7 @@
 
 package com.google.sps.servlets;
 
-import com.google.cloud.translate.Translate;
-import com.google.cloud.translate.TranslateOptions;
-import com.google.cloud.translate.Translation;
+import com.google.sps.data.TranslationCache;
 import java.io.IOException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -32,11 +30,8 @@ public class TranslationServlet extends HttpServlet {
     String originalText = request.getParameter("text");
     String languageCode = request.getParameter("languageCode");
 
-    // Do the translation.
-    Translate translate = TranslateOptions.getDefaultInstance().getService();
-    Translation translation =
-        translate.translate(originalText, Translate.TranslateOption.targetLanguage(languageCode));
-    String translatedText = translation.getTranslatedText();
+    // Do the translation, or reuse it if someone asked for the same one recently.
+    String translatedText = TranslationCache.getInstance().translate(originalText, languageCode);
 
     // Output the translation.
     response.setContentType("text/html; charset=UTF-8");
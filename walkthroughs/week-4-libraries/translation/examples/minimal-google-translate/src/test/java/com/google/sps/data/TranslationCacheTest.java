@@ -0,0 +1,127 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Checks that the cache only sends the API strings it hasn't translated yet. */
+@RunWith(JUnit4.class)
+public final class TranslationCacheTest {
+  private static final long ONE_HOUR_MILLIS = 60 * 60 * 1000;
+
+  /** Translates by prefixing the language code, and records every call it receives. */
+  private static final class FakeTranslator implements TranslationCache.Translator {
+    private final List<List<String>> calls = new ArrayList<>();
+
+    @Override
+    public List<String> translate(List<String> texts, String languageCode) {
+      calls.add(new ArrayList<>(texts));
+      List<String> translatedTexts = new ArrayList<>(texts.size());
+      for (String text : texts) {
+        translatedTexts.add(languageCode + ":" + text);
+      }
+      return translatedTexts;
+    }
+  }
+
+  private FakeTranslator translator;
+
+  @Before
+  public void setUp() {
+    translator = new FakeTranslator();
+  }
+
+  @Test
+  public void repeatedTranslationCallsApiOnce() {
+    TranslationCache cache = new TranslationCache(translator, 10, ONE_HOUR_MILLIS);
+
+    Assert.assertEquals("es:hello", cache.translate("hello", "es"));
+    Assert.assertEquals("es:hello", cache.translate("hello", "es"));
+
+    Assert.assertEquals(1, translator.calls.size());
+  }
+
+  @Test
+  public void languagesAreCachedSeparately() {
+    TranslationCache cache = new TranslationCache(translator, 10, ONE_HOUR_MILLIS);
+
+    Assert.assertEquals("es:hello", cache.translate("hello", "es"));
+    Assert.assertEquals("fr:hello", cache.translate("hello", "fr"));
+
+    Assert.assertEquals(2, translator.calls.size());
+  }
+
+  @Test
+  public void batchSendsOnlyUncachedDistinctStrings() {
+    TranslationCache cache = new TranslationCache(translator, 10, ONE_HOUR_MILLIS);
+    cache.translate("b", "es");
+
+    List<String> actual = cache.translate(Arrays.asList("a", "b", "a", "c"), "es");
+
+    Assert.assertEquals(Arrays.asList("es:a", "es:b", "es:a", "es:c"), actual);
+    Assert.assertEquals(2, translator.calls.size());
+    Assert.assertEquals(Arrays.asList("a", "c"), translator.calls.get(1));
+  }
+
+  @Test
+  public void largeBatchIsSplitIntoApiSizedCalls() {
+    TranslationCache cache = new TranslationCache(translator, 1000, ONE_HOUR_MILLIS);
+    List<String> texts = new ArrayList<>();
+    for (int i = 0; i < TranslationCache.MAX_STRINGS_PER_CALL + 1; i++) {
+      texts.add("text " + i);
+    }
+
+    List<String> actual = cache.translate(texts, "es");
+
+    Assert.assertEquals(texts.size(), actual.size());
+    Assert.assertEquals("es:text 0", actual.get(0));
+    Assert.assertEquals("es:text " + (texts.size() - 1), actual.get(texts.size() - 1));
+    Assert.assertEquals(2, translator.calls.size());
+    Assert.assertEquals(TranslationCache.MAX_STRINGS_PER_CALL, translator.calls.get(0).size());
+    Assert.assertEquals(1, translator.calls.get(1).size());
+  }
+
+  @Test
+  public void expiredTranslationIsFetchedAgain() {
+    TranslationCache cache = new TranslationCache(translator, 10, 0);
+
+    cache.translate("hello", "es");
+    cache.translate("hello", "es");
+
+    Assert.assertEquals(2, translator.calls.size());
+  }
+
+  @Test
+  public void leastRecentlyUsedTranslationIsEvicted() {
+    TranslationCache cache = new TranslationCache(translator, 2, ONE_HOUR_MILLIS);
+    cache.translate("a", "es");
+    cache.translate("b", "es");
+    cache.translate("a", "es");
+    cache.translate("c", "es");
+
+    // "b" was used least recently, so it is the one that had to be dropped.
+    cache.translate("a", "es");
+    Assert.assertEquals(3, translator.calls.size());
+    cache.translate("b", "es");
+    Assert.assertEquals(4, translator.calls.size());
+  }
+}